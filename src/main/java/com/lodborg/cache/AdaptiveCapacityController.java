@@ -0,0 +1,114 @@
+package com.lodborg.cache;
+
+/**
+ * Resizes an LRU cache towards the smallest capacity reaching a target hit ratio,
+ * based on the hit ratio curve observed by a {@link HitRatioCurveEstimator}. The
+ * controller is opt-in and passive: it only acts when adjust() is called, for
+ * example every few thousand operations or from a periodic task. Like the cache
+ * itself, it is not thread-safe, so it has to be called under the same lock as
+ * the cache.
+ *
+ * A decision is only made once the estimator has observed a minimum amount of
+ * sampled lookups. The cache grows, if its current capacity doesn't reach the
+ * target according to the curve. It shrinks only if a smaller capacity reaches
+ * the target plus a tolerance, so that a hit ratio close to the target doesn't
+ * make the capacity oscillate. A single adjustment changes the capacity at most
+ * by the configured factor and never leaves the configured bounds.
+ *
+ * Changing the capacity discards the counts of the estimator, since they were
+ * collected for other capacities. The next adjustment therefore waits until
+ * enough lookups were observed at the new capacity.
+ *
+ * @param <K> The generic type of the keys
+ */
+public class AdaptiveCapacityController<K> {
+	private final LRUCache<K, ?> cache;
+	private final HitRatioCurveEstimator<K> estimator;
+	private final double targetHitRatio;
+	private final int minCapacity, maxCapacity;
+	private final long minSamples;
+	private final double tolerance;
+	private final double maxStepFactor;
+
+	/**
+	 * Instantiates a controller waiting for 1000 sampled lookups before each
+	 * adjustment, shrinking only with a tolerance of 0.01 above the target, and
+	 * changing the capacity at most by a factor of two at a time.
+	 * @see #AdaptiveCapacityController(LRUCache, HitRatioCurveEstimator, double, int, int, long, double, double)
+	 */
+	public AdaptiveCapacityController(LRUCache<K, ?> cache, HitRatioCurveEstimator<K> estimator,
+	                                  double targetHitRatio, int minCapacity, int maxCapacity){
+		this(cache, estimator, targetHitRatio, minCapacity, maxCapacity, 1000, 0.01, 2);
+	}
+
+	/**
+	 * Instantiates a controller and attaches the estimator to the cache.
+	 * @param cache The cache to be resized.
+	 * @param estimator The estimator of the hit ratio curve. It should simulate
+	 *                  capacities below and above the current one.
+	 * @param targetHitRatio The desired hit ratio, in the range (0, 1].
+	 * @param minCapacity The smallest capacity the cache may be shrunk to.
+	 * @param maxCapacity The largest capacity the cache may be grown to.
+	 * @param minSamples The amount of sampled lookups the estimator has to observe
+	 *                   at the current capacity before an adjustment.
+	 * @param tolerance The margin above the target a smaller capacity has to
+	 *                  reach, before the cache is shrunk.
+	 * @param maxStepFactor The largest factor by which a single adjustment may
+	 *                      grow or shrink the capacity. Must be greater than one.
+	 */
+	public AdaptiveCapacityController(LRUCache<K, ?> cache, HitRatioCurveEstimator<K> estimator,
+	                                  double targetHitRatio, int minCapacity, int maxCapacity,
+	                                  long minSamples, double tolerance, double maxStepFactor){
+		if (!(targetHitRatio > 0 && targetHitRatio <= 1))
+			throw new IllegalArgumentException("Target hit ratio must be in (0, 1]: " + targetHitRatio);
+		if (minCapacity < 1 || maxCapacity < minCapacity)
+			throw new IllegalArgumentException("Invalid capacity bounds: " + minCapacity + ", " + maxCapacity);
+		if (minSamples < 1)
+			throw new IllegalArgumentException("At least one sample is required: " + minSamples);
+		if (!(tolerance >= 0))
+			throw new IllegalArgumentException("Tolerance must not be negative: " + tolerance);
+		if (!(maxStepFactor > 1))
+			throw new IllegalArgumentException("Step factor must be greater than one: " + maxStepFactor);
+		this.cache = cache;
+		this.estimator = estimator;
+		this.targetHitRatio = targetHitRatio;
+		this.minCapacity = minCapacity;
+		this.maxCapacity = maxCapacity;
+		this.minSamples = minSamples;
+		this.tolerance = tolerance;
+		this.maxStepFactor = maxStepFactor;
+		cache.setHitRatioEstimator(estimator);
+	}
+
+	/**
+	 * Changes the capacity of the cache, if the curve observed since the last
+	 * change calls for it. Shrinking takes effect incrementally, as with
+	 * {@link LRUCache#setCapacity(int)}.
+	 * @return The capacity of the cache after the adjustment.
+	 */
+	public int adjust(){
+		int current = cache.getCapacity();
+		if (estimator.sampledAccesses() < minSamples)
+			return current;
+		int reachingTarget = estimator.suggestCapacity(targetHitRatio);
+		int desired;
+		if (reachingTarget == -1)
+			desired = Math.max(current, estimator.getCurve().lastKey());
+		else if (reachingTarget > current)
+			desired = reachingTarget;
+		else {
+			int reachingMargin = estimator.suggestCapacity(targetHitRatio + tolerance);
+			if (reachingMargin == -1 || reachingMargin >= current)
+				return current;
+			desired = reachingMargin;
+		}
+		if (desired > current)
+			desired = (int) Math.min(desired, Math.ceil(current * maxStepFactor));
+		else
+			desired = (int) Math.max(desired, Math.floor(current / maxStepFactor));
+		desired = Math.max(minCapacity, Math.min(maxCapacity, desired));
+		if (desired != current)
+			cache.setCapacity(desired);
+		return desired;
+	}
+}
@@ -0,0 +1,162 @@
+package com.lodborg.cache;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Exports the statistics of an LRU cache to JMX or to a {@link MetricsRegistry}.
+ *
+ * The LRU cache is not thread-safe, and the exported values are read from the
+ * threads of the monitoring system without any synchronization. They may be
+ * slightly out of date, but reading them never interferes with the cache.
+ */
+public class CacheMetrics {
+	public static final String SIZE = "cache.size";
+	public static final String CAPACITY = "cache.capacity";
+	public static final String HITS = "cache.hits";
+	public static final String MISSES = "cache.misses";
+	public static final String EVICTIONS = "cache.evictions";
+	public static final String LISTENER_TIME = "cache.listener.time";
+	public static final String MAINTENANCE_BACKLOG = "cache.maintenance.backlog";
+
+	private CacheMetrics(){
+	}
+
+	/**
+	 * The JMX view of a single cache.
+	 */
+	private static class MXBeanAdapter implements LRUCacheMXBean {
+		private final LRUCache<?, ?> cache;
+
+		private MXBeanAdapter(LRUCache<?, ?> cache){
+			this.cache = cache;
+		}
+
+		@Override
+		public int getSize() {
+			return cache.size();
+		}
+
+		@Override
+		public int getCapacity() {
+			return cache.getCapacity();
+		}
+
+		@Override
+		public long getHitCount() {
+			return cache.hitCount();
+		}
+
+		@Override
+		public long getMissCount() {
+			return cache.missCount();
+		}
+
+		@Override
+		public double getHitRatio() {
+			long hits = cache.hitCount();
+			long total = hits + cache.missCount();
+			return total == 0 ? 0 : (double) hits / total;
+		}
+
+		@Override
+		public long getEvictionCount() {
+			return cache.evictionCount();
+		}
+
+		@Override
+		public long getListenerTimeNanos() {
+			return cache.listenerTimeNanos();
+		}
+
+		@Override
+		public int getMaintenanceBacklog() {
+			return cache.getMaintenanceBacklog();
+		}
+	}
+
+	/**
+	 * @param name The name of the cache.
+	 * @return The object name under which a cache with the given name is registered.
+	 */
+	public static ObjectName objectName(String name) throws JMException {
+		return new ObjectName("com.lodborg.cache:type=LRUCache,name=" + ObjectName.quote(name));
+	}
+
+	/**
+	 * Registers an MBean for the cache in the platform MBean server.
+	 * @param cache The cache to be exported.
+	 * @param name The name of the cache, unique among the registered caches.
+	 * @return The object name of the registered MBean.
+	 * @throws JMException If a cache with the same name is already registered.
+	 */
+	public static ObjectName registerMBean(LRUCache<?, ?> cache, String name) throws JMException {
+		ObjectName objectName = objectName(name);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.registerMBean(new StandardMBean(new MXBeanAdapter(cache), LRUCacheMXBean.class, true), objectName);
+		return objectName;
+	}
+
+	/**
+	 * Removes the MBean of the cache with the given name from the platform MBean server.
+	 * @throws JMException If no cache with the given name is registered.
+	 */
+	public static void unregisterMBean(String name) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name));
+	}
+
+	/**
+	 * Registers the statistics of the cache as metrics in the given registry.
+	 * @param cache The cache to be exported.
+	 * @param name The name of the cache, passed along with every metric.
+	 * @param registry The registry receiving the metrics.
+	 */
+	public static void bindTo(LRUCache<?, ?> cache, String name, MetricsRegistry registry){
+		final MXBeanAdapter adapter = new MXBeanAdapter(cache);
+		registry.registerGauge(SIZE, name, new MetricsRegistry.Metric() {
+			@Override
+			public double value() {
+				return adapter.getSize();
+			}
+		});
+		registry.registerGauge(CAPACITY, name, new MetricsRegistry.Metric() {
+			@Override
+			public double value() {
+				return adapter.getCapacity();
+			}
+		});
+		registry.registerGauge(MAINTENANCE_BACKLOG, name, new MetricsRegistry.Metric() {
+			@Override
+			public double value() {
+				return adapter.getMaintenanceBacklog();
+			}
+		});
+		registry.registerCounter(HITS, name, new MetricsRegistry.Metric() {
+			@Override
+			public double value() {
+				return adapter.getHitCount();
+			}
+		});
+		registry.registerCounter(MISSES, name, new MetricsRegistry.Metric() {
+			@Override
+			public double value() {
+				return adapter.getMissCount();
+			}
+		});
+		registry.registerCounter(EVICTIONS, name, new MetricsRegistry.Metric() {
+			@Override
+			public double value() {
+				return adapter.getEvictionCount();
+			}
+		});
+		registry.registerCounter(LISTENER_TIME, name, new MetricsRegistry.Metric() {
+			@Override
+			public double value() {
+				return adapter.getListenerTimeNanos();
+			}
+		});
+	}
+}
@@ -0,0 +1,9 @@
+package com.lodborg.cache;
+
+/**
+ * The operations of the LRU cache that can be observed from the outside, for
+ * example by a {@link SlowOperationListener}.
+ */
+public enum CacheOperation {
+	GET, PUT, EVICT, CLEAR
+}
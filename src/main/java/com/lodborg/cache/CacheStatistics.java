@@ -0,0 +1,71 @@
+package com.lodborg.cache;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An immutable snapshot of the statistics collected by an LRU cache. Hits and
+ * misses are counted by get operations only. Evictions include only key-value
+ * pairs discarded due to cache overflow or shrinking, not the ones removed via
+ * an API call.
+ */
+public class CacheStatistics {
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final long listenerTimeNanos;
+	private final SortedMap<Integer, Double> hitRatioCurve;
+
+	CacheStatistics(long hitCount, long missCount, long evictionCount, long listenerTimeNanos,
+			SortedMap<Integer, Double> hitRatioCurve){
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.listenerTimeNanos = listenerTimeNanos;
+		this.hitRatioCurve = Collections.unmodifiableSortedMap(new TreeMap<>(hitRatioCurve));
+	}
+
+	public long getHitCount(){
+		return hitCount;
+	}
+
+	public long getMissCount(){
+		return missCount;
+	}
+
+	public long getEvictionCount(){
+		return evictionCount;
+	}
+
+	/**
+	 * @return The total time in nanoseconds spent in the eviction listener.
+	 */
+	public long getListenerTimeNanos(){
+		return listenerTimeNanos;
+	}
+
+	/**
+	 * @return The ratio of get operations that found their key in the cache, or
+	 *         zero, if there were no get operations yet.
+	 */
+	public double getHitRatio(){
+		long total = hitCount + missCount;
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	/**
+	 * @return The estimated hit ratio the cache would have at different capacities,
+	 *         mapped by the capacity. The map is empty, unless a
+	 *         {@link HitRatioCurveEstimator} is attached to the cache.
+	 */
+	public SortedMap<Integer, Double> getHitRatioCurve(){
+		return hitRatioCurve;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStatistics(hits=" + hitCount + ", misses=" + missCount
+				+ ", evictions=" + evictionCount + ", listenerTimeNanos=" + listenerTimeNanos + ", curve=" + hitRatioCurve + ")";
+	}
+}
@@ -0,0 +1,260 @@
+package com.lodborg.cache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Records the accesses to an LRU cache into a rotating log of memory-mapped
+ * segment files, so that they can be replayed offline by the
+ * {@link CacheTraceReplayer}. Attach it to a cache with
+ * {@link LRUCache#setTraceRecorder(CacheTraceRecorder)}.
+ *
+ * Each get, put, evict and evictAll operation is stored as a fixed-size record of
+ * 13 bytes: the mixed hash of the key (4 bytes), the operation (1 byte) and the
+ * time in nanoseconds since the recorder was created (8 bytes). The keys and
+ * values themselves are never recorded, an evictAll has the hash of a null key.
+ * Writing a record is a plain write into the mapped buffer, the operating system
+ * takes care of flushing it to the disk.
+ *
+ * Once a segment is full, the recorder continues in a new one. If the amount of
+ * segments exceeds the configured limit, the oldest segment is deleted, so the
+ * log always contains the most recent accesses. The file I/O of the rotation is
+ * kept away from the cache operations: while a segment is being filled, a
+ * background thread of the recorder already creates and maps the next one, and
+ * deletes the segments exceeding the limit. A cache operation only has to wait
+ * for it, if the current segment fills up before the next one is ready.
+ *
+ * A recorder started in a directory that already contains segments with the same
+ * prefix continues after the last of them, and counts them towards the limit.
+ * Like the cache itself, the recorder is not thread-safe.
+ */
+public class CacheTraceRecorder implements Closeable {
+	static final int MAGIC = 0x4c525554;
+	static final int HEADER_SIZE = 8;
+	static final int RECORD_SIZE = 13;
+	static final String SUFFIX = ".trace";
+
+	private final File directory;
+	private final String prefix;
+	private final int segmentSize;
+	private final int maxSegments;
+	private final long startNanos;
+	private final Deque<File> segments = new ArrayDeque<>();
+	private final ExecutorService preparer;
+	private MappedByteBuffer buffer;
+	private Future<MappedByteBuffer> next;
+	private int segmentNumber;
+	private long recordCount;
+	private IOException failure;
+
+	/**
+	 * @param directory The directory where the segment files are created.
+	 * @param prefix The prefix of the names of the segment files.
+	 * @param segmentSize The size of a single segment file in bytes.
+	 * @param maxSegments The maximum amount of segment files kept on the disk.
+	 * @throws IOException If the first segment file can't be created, or an
+	 *         existing segment exceeding the limit can't be deleted.
+	 */
+	public CacheTraceRecorder(File directory, String prefix, int segmentSize, int maxSegments) throws IOException {
+		if (segmentSize < HEADER_SIZE + RECORD_SIZE)
+			throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+		if (maxSegments < 1)
+			throw new IllegalArgumentException("At least one segment is required: " + maxSegments);
+		this.directory = directory;
+		this.prefix = prefix;
+		this.segmentSize = segmentSize;
+		this.maxSegments = maxSegments;
+		this.startNanos = System.nanoTime();
+		for (File segment : listSegments(directory, prefix)){
+			segments.addLast(segment);
+			segmentNumber = Math.max(segmentNumber, segmentNumber(segment, prefix));
+		}
+		File first = segmentFile(directory, prefix, ++segmentNumber);
+		buffer = createSegment(first);
+		retire(first);
+		preparer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "cache-trace-recorder");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		prepareNext(null);
+	}
+
+	/**
+	 * Appends a record for an operation on the given key. If the recorder can't
+	 * continue in a new segment, the recording stops and the cause is kept for
+	 * {@link #getFailure()}. The cache operation is never affected by it.
+	 */
+	void record(CacheOperation operation, Object key){
+		if (buffer == null)
+			return;
+		if (buffer.remaining() < RECORD_SIZE){
+			try {
+				rotate();
+			} catch (IOException e) {
+				failure = e;
+				buffer = null;
+				preparer.shutdown();
+				return;
+			}
+		}
+		buffer.putInt(Hashing.mix(key));
+		// Zero marks the end of the records in a segment, so the operations start at one.
+		buffer.put((byte) (operation.ordinal() + 1));
+		buffer.putLong(System.nanoTime() - startNanos);
+		recordCount++;
+	}
+
+	/**
+	 * @return The total amount of records written by this recorder, including the
+	 *         ones in segments that were already deleted.
+	 */
+	public long getRecordCount(){
+		return recordCount;
+	}
+
+	/**
+	 * @return The error that stopped the recording before the recorder was
+	 *         closed, or null if there was none.
+	 */
+	public IOException getFailure(){
+		return failure;
+	}
+
+	/**
+	 * @param directory The directory containing the segments.
+	 * @param prefix The prefix of the names of the segment files.
+	 * @return The name of the segment file with the given number.
+	 */
+	static File segmentFile(File directory, String prefix, int number){
+		return new File(directory, String.format("%s-%08d%s", prefix, number, SUFFIX));
+	}
+
+	/**
+	 * @param directory The directory containing the segments.
+	 * @param prefix The prefix of the names of the segment files.
+	 * @return The segment files with the given prefix, oldest first.
+	 */
+	static List<File> listSegments(File directory, final String prefix){
+		File[] files = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				// The length check excludes other prefixes starting with this one.
+				return name.startsWith(prefix + "-") && name.endsWith(SUFFIX)
+						&& name.length() == prefix.length() + 9 + SUFFIX.length();
+			}
+		});
+		if (files == null)
+			return Arrays.asList();
+		Arrays.sort(files);
+		return Arrays.asList(files);
+	}
+
+	private static int segmentNumber(File segment, String prefix){
+		String name = segment.getName();
+		try {
+			return Integer.parseInt(name.substring(prefix.length() + 1, name.length() - SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Switches to the segment prepared in the background and starts preparing
+	 * the one after it.
+	 */
+	private void rotate() throws IOException {
+		try {
+			buffer = next.get();
+		} catch (ExecutionException e) {
+			throw new IOException("Unable to prepare the next trace segment", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the next trace segment");
+		}
+		prepareNext(segmentFile(directory, prefix, ++segmentNumber));
+	}
+
+	/**
+	 * Submits the preparation of the segment following the current one.
+	 * @param activated The segment that has just become the current one, or null
+	 *                  if it was already accounted for.
+	 */
+	private void prepareNext(final File activated){
+		final File file = segmentFile(directory, prefix, segmentNumber + 1);
+		next = preparer.submit(new Callable<MappedByteBuffer>() {
+			@Override
+			public MappedByteBuffer call() throws IOException {
+				if (activated != null)
+					retire(activated);
+				return createSegment(file);
+			}
+		});
+	}
+
+	private MappedByteBuffer createSegment(File file) throws IOException {
+		MappedByteBuffer mapped;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(segmentSize);
+			mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		}
+		mapped.putInt(MAGIC);
+		mapped.putInt(RECORD_SIZE);
+		return mapped;
+	}
+
+	/**
+	 * Adds the segment to the log and deletes the oldest segments exceeding the limit.
+	 */
+	private void retire(File segment) throws IOException {
+		segments.addLast(segment);
+		while (segments.size() > maxSegments){
+			File oldest = segments.removeFirst();
+			if (!oldest.delete())
+				throw new IOException("Unable to delete old trace segment " + oldest);
+		}
+	}
+
+	/**
+	 * Flushes the current segment to the disk and stops recording. The segment
+	 * prepared in the background, which hasn't received any records yet, is deleted.
+	 */
+	@Override
+	public void close() {
+		if (buffer != null){
+			buffer.force();
+			buffer = null;
+		}
+		if (next != null){
+			try {
+				next.get();
+			} catch (ExecutionException e) {
+				// A failed preparation leaves at most the file behind, deleted below.
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			segmentFile(directory, prefix, segmentNumber + 1).delete();
+			next = null;
+			preparer.shutdown();
+		}
+	}
+}
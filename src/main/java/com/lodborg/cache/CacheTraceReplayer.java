@@ -0,0 +1,140 @@
+package com.lodborg.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Replays the accesses recorded by a {@link CacheTraceRecorder} against a cache,
+ * in order to find out how a different configuration would have performed under
+ * the recorded load. The keys of the replayed cache are the recorded key hashes.
+ *
+ * The segments are memory-mapped and processed one record at a time, so traces
+ * of any length can be replayed without loading them into memory.
+ *
+ * The replayer can also be run from the command line:
+ * <pre>
+ * java com.lodborg.cache.CacheTraceReplayer &lt;capacity&gt; &lt;directory&gt; &lt;prefix&gt;
+ * </pre>
+ */
+public class CacheTraceReplayer {
+	private static final Object VALUE = new Object();
+	private static final CacheOperation[] OPERATIONS = CacheOperation.values();
+
+	/**
+	 * The outcome of a replay.
+	 */
+	public static class Result {
+		private final long operations;
+		private final CacheStatistics statistics;
+		private final long elapsedNanos;
+
+		private Result(long operations, CacheStatistics statistics, long elapsedNanos){
+			this.operations = operations;
+			this.statistics = statistics;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		public long getOperations(){
+			return operations;
+		}
+
+		/**
+		 * @return The statistics of the replayed cache after the replay.
+		 */
+		public CacheStatistics getStatistics(){
+			return statistics;
+		}
+
+		public long getElapsedNanos(){
+			return elapsedNanos;
+		}
+
+		/**
+		 * @return The amount of replayed operations per second.
+		 */
+		public double getThroughput(){
+			return elapsedNanos == 0 ? 0 : operations * 1e9 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("operations=%d, hitRatio=%.4f, evictions=%d, throughput=%.0f ops/s",
+					operations, statistics.getHitRatio(), statistics.getEvictionCount(), getThroughput());
+		}
+	}
+
+	private CacheTraceReplayer(){
+	}
+
+	/**
+	 * @param directory The directory containing the segments.
+	 * @param prefix The prefix of the names of the segment files.
+	 * @return The segment files with the given prefix, oldest first.
+	 */
+	public static List<File> findSegments(File directory, String prefix){
+		return CacheTraceRecorder.listSegments(directory, prefix);
+	}
+
+	/**
+	 * Feeds the recorded operations into the given cache, in the order they were
+	 * recorded. Gets, puts, evicts and evictAlls are replayed as such, the value
+	 * stored by the replayed puts is a placeholder.
+	 * @param segments The segment files, oldest first.
+	 * @param cache The cache to replay the operations against. It should be empty.
+	 * @return The statistics of the cache and the throughput of the replay.
+	 * @throws IOException If a segment can't be read or isn't a valid trace segment.
+	 */
+	public static Result replay(List<File> segments, LRUCache<Integer, Object> cache) throws IOException {
+		long operations = 0;
+		long start = System.nanoTime();
+		for (File segment : segments){
+			MappedByteBuffer buffer;
+			try (RandomAccessFile raf = new RandomAccessFile(segment, "r")) {
+				buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			}
+			if (buffer.remaining() < CacheTraceRecorder.HEADER_SIZE
+					|| buffer.getInt() != CacheTraceRecorder.MAGIC
+					|| buffer.getInt() != CacheTraceRecorder.RECORD_SIZE)
+				throw new IOException("Not a cache trace segment: " + segment);
+			while (buffer.remaining() >= CacheTraceRecorder.RECORD_SIZE){
+				int offset = buffer.position();
+				int hash = buffer.getInt();
+				int operation = buffer.get();
+				if (operation == 0)
+					break;
+				if (operation < 0 || operation > OPERATIONS.length)
+					throw new IOException("Invalid operation " + operation + " in " + segment + " at offset " + offset);
+				buffer.getLong();
+				switch (OPERATIONS[operation - 1]){
+					case GET:
+						cache.get(hash);
+						break;
+					case PUT:
+						cache.put(hash, VALUE);
+						break;
+					case EVICT:
+						cache.evict(hash);
+						break;
+					case CLEAR:
+						cache.evictAll();
+						break;
+				}
+				operations++;
+			}
+		}
+		return new Result(operations, cache.getStatistics(), System.nanoTime() - start);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3){
+			System.err.println("Usage: CacheTraceReplayer <capacity> <directory> <prefix>");
+			System.exit(1);
+		}
+		LRUCache<Integer, Object> cache = new LRUCache<>(Integer.parseInt(args[0]));
+		System.out.println(replay(findSegments(new File(args[1]), args[2]), cache));
+	}
+}
@@ -0,0 +1,29 @@
+package com.lodborg.cache;
+
+/**
+ * Hash functions shared by the components that identify keys by their hash only.
+ */
+final class Hashing {
+	private Hashing(){
+	}
+
+	/**
+	 * Mixes the hash code of the key with the finalizer of MurmurHash3, so that
+	 * keys with sequential hash codes are spread uniformly over all 32 bits.
+	 */
+	static int mix(Object key){
+		return mix(key == null ? 0 : key.hashCode());
+	}
+
+	/**
+	 * Mixes the bits of the given hash with the finalizer of MurmurHash3.
+	 */
+	static int mix(int h){
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
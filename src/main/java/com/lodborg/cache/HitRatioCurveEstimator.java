@@ -0,0 +1,197 @@
+package com.lodborg.cache;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Estimates the hit ratio an LRU cache would have if its capacity was a multiple
+ * of the current one, for example half, twice or four times as large. The
+ * estimator runs alongside the real cache and is fed with every get and put
+ * operation on it.
+ *
+ * Simulating a full cache for every virtual capacity would cost several times the
+ * memory and time of the real one. Instead, the estimator uses spatial hashed
+ * sampling (as in SHARDS): only the keys whose hash falls below a threshold are
+ * considered, and the virtual capacities are simulated by a small shadow LRU
+ * stack, scaled down by the sampling rate. Since the sample is chosen by key and
+ * not by operation, every access to a sampled key is observed, and the shadow
+ * stack sees the same reuse pattern as a full-sized cache would. A single stack
+ * simulates all virtual capacities at once, see {@link ShadowStack}. For the
+ * remaining keys, the overhead is a single hash computation per operation.
+ *
+ * The shadow stack only stores the hashes of the sampled keys, never the keys or
+ * values themselves. The sampling rate should be chosen so that the scaled down
+ * capacities contain at least a few hundred keys, otherwise the estimates become
+ * noisy. The default rate of one percent is well suited for caches holding tens
+ * of thousands of key-value pairs or more.
+ *
+ * Whenever the capacity of the real cache changes, the collected counts are
+ * discarded, since they were collected for other virtual capacities. The
+ * contents of the shadow stack are kept, so the estimates don't start from a
+ * cold cache.
+ *
+ * @param <K> The generic type of the keys
+ */
+public class HitRatioCurveEstimator<K> {
+	private static final int SAMPLING_MODULUS = 1 << 16;
+
+	private final double samplingRate;
+	private final int threshold;
+	private final double[] multipliers;
+	private ShadowStack stack;
+	private int[] pointCapacities;
+	private int[] pointLevels;
+	private long[] levelHits;
+	private long accesses;
+
+	/**
+	 * Instantiates an estimator sampling one percent of the keys and simulating
+	 * half, one, two and four times the capacity of the real cache.
+	 */
+	public HitRatioCurveEstimator(){
+		this(0.01, 0.5, 1, 2, 4);
+	}
+
+	/**
+	 * @param samplingRate The fraction of keys that are considered by the estimator.
+	 *                     Must be in the range (0, 1].
+	 * @param multipliers The capacities to be simulated, as multiples of the
+	 *                    capacity of the real cache.
+	 */
+	public HitRatioCurveEstimator(double samplingRate, double... multipliers){
+		if (!(samplingRate > 0 && samplingRate <= 1))
+			throw new IllegalArgumentException("Sampling rate must be in (0, 1]: " + samplingRate);
+		if (multipliers.length == 0)
+			throw new IllegalArgumentException("At least one multiplier is required");
+		for (double multiplier : multipliers)
+			if (!(multiplier > 0))
+				throw new IllegalArgumentException("Multipliers must be positive: " + multiplier);
+		this.samplingRate = samplingRate;
+		this.threshold = (int) Math.max(1, Math.round(samplingRate * SAMPLING_MODULUS));
+		this.multipliers = multipliers.clone();
+		Arrays.sort(this.multipliers);
+	}
+
+	/**
+	 * Adjusts the shadow stack to the capacity of the real cache and discards the
+	 * counts collected so far. Called by the cache whenever the estimator is
+	 * attached or the capacity changes.
+	 */
+	void setCapacity(int capacity){
+		// Multipliers rounding to the same capacity yield a single point of the
+		// curve, and capacities scaling to the same shadow size share a level.
+		int[] capacities = new int[multipliers.length];
+		int[] sizes = new int[multipliers.length];
+		int points = 0, levels = 0;
+		int[] levelOfPoint = new int[multipliers.length];
+		for (double multiplier : multipliers){
+			int pointCapacity = (int) Math.max(1, Math.round(capacity * multiplier));
+			if (points > 0 && capacities[points - 1] == pointCapacity)
+				continue;
+			int size = (int) Math.max(1, Math.round(pointCapacity * samplingRate));
+			if (levels == 0 || sizes[levels - 1] != size)
+				sizes[levels++] = size;
+			capacities[points] = pointCapacity;
+			levelOfPoint[points++] = levels - 1;
+		}
+		pointCapacities = Arrays.copyOf(capacities, points);
+		pointLevels = Arrays.copyOf(levelOfPoint, points);
+
+		ShadowStack previous = stack;
+		stack = new ShadowStack(Arrays.copyOf(sizes, levels));
+		if (previous != null){
+			for (int key : previous.keysFromLeastRecent())
+				stack.access(key);
+		}
+		levelHits = new long[levels];
+		accesses = 0;
+	}
+
+	/**
+	 * Records a lookup of the key in the real cache. If the key is sampled, it is
+	 * moved to the head of the shadow stack, or inserted if it missed.
+	 */
+	void recordGet(K key){
+		int hash = key == null ? 0 : key.hashCode();
+		if (!isSampled(hash) || stack == null)
+			return;
+		int level = stack.access(Hashing.mix(hash));
+		accesses++;
+		if (level < levelHits.length)
+			levelHits[level]++;
+	}
+
+	/**
+	 * Records an insert or update of the key in the real cache. If the key is
+	 * sampled, it is moved to the head of the shadow stack.
+	 */
+	void recordPut(K key){
+		int hash = key == null ? 0 : key.hashCode();
+		if (isSampled(hash) && stack != null)
+			stack.access(Hashing.mix(hash));
+	}
+
+	/**
+	 * @return The estimated hit ratio for each simulated capacity, mapped by the
+	 *         capacity. Empty, if no sampled lookups were observed since the
+	 *         last change of the capacity.
+	 */
+	public SortedMap<Integer, Double> getCurve(){
+		SortedMap<Integer, Double> curve = new TreeMap<>();
+		if (accesses == 0)
+			return curve;
+		long hits = 0;
+		int level = 0;
+		for (int i = 0; i < pointCapacities.length; i++){
+			while (level <= pointLevels[i])
+				hits += levelHits[level++];
+			curve.put(pointCapacities[i], (double) hits / accesses);
+		}
+		return curve;
+	}
+
+	/**
+	 * Suggests a capacity for the real cache based on the estimated curve. The
+	 * result can be passed to {@link LRUCache#setCapacity(int)}, or the cache can
+	 * be resized continuously by an {@link AdaptiveCapacityController}.
+	 * @param targetHitRatio The desired hit ratio.
+	 * @return The smallest simulated capacity with an estimated hit ratio at least
+	 *         as high as the target, or -1, if none of them reaches the target.
+	 */
+	public int suggestCapacity(double targetHitRatio){
+		for (Map.Entry<Integer, Double> point : getCurve().entrySet()){
+			if (point.getValue() >= targetHitRatio)
+				return point.getKey();
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The amount of sampled lookups observed since the last change of
+	 *         the capacity or reset.
+	 */
+	long sampledAccesses(){
+		return accesses;
+	}
+
+	/**
+	 * Discards the collected hit and access counts, but keeps the contents of the
+	 * shadow stack, so that the estimates don't start from a cold cache.
+	 */
+	public void reset(){
+		if (levelHits != null)
+			Arrays.fill(levelHits, 0);
+		accesses = 0;
+	}
+
+	/**
+	 * Decides on the sample by Fibonacci hashing, which spreads sequential hash
+	 * codes uniformly over the upper bits with a single multiplication. Only the
+	 * sampled keys pay for the full mix used as their key in the shadow stack.
+	 */
+	private boolean isSampled(int hashCode){
+		return (hashCode * 0x9e3779b9) >>> 16 < threshold;
+	}
+}
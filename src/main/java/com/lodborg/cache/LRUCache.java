@@ -4,6 +4,7 @@ import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.TreeMap;
 
 /**
  * The LRU cache consists of a doubly linked list and a hash map. Each node in
@@ -27,6 +28,27 @@ import java.util.NoSuchElementException;
  * Iterating via the iterator doesn't cause the elements to be bumped to the
  * head of the cache.
  *
+ * The capacity of the cache can be changed at runtime. Growing the cache takes
+ * effect immediately. Shrinking it doesn't evict the surplus nodes at once, since
+ * that could take a long time for large caches. Instead, each subsequent get or
+ * put operation removes a bounded batch of nodes from the tail of the list, until
+ * the size of the cache fits the new capacity again. An AdaptiveCapacityController
+ * can change the capacity automatically, based on the observed hit ratio curve.
+ *
+ * The cache counts its hits, misses and evictions. A snapshot of these counts
+ * can be obtained via getStatistics(). If a HitRatioCurveEstimator is attached
+ * to the cache, the snapshot also contains the estimated hit ratio at other
+ * capacities.
+ *
+ * Optionally, a sample of the get and put operations can be timed, and the ones
+ * exceeding a threshold are reported to a SlowOperationListener. The statistics
+ * can be exported to JMX or to a metrics library via CacheMetrics. For offline
+ * analysis, the accesses can be recorded with a CacheTraceRecorder and replayed
+ * against differently configured caches.
+ *
+ * Keys known to be missing from the underlying data source can be remembered in
+ * a MissFilter attached to the cache, without allocating nodes for them.
+ *
  * @param <K> The generic type of the keys
  * @param <V> The generic type of the values
  */
@@ -126,12 +148,26 @@ public class LRUCache<K, V> implements Iterable<LRUCache.Node<K, V>>{
 		}
 	}
 
+	/**
+	 * The maximum amount of nodes removed from the tail of the list by a single
+	 * operation, while the cache is shrinking to a reduced capacity.
+	 */
+	static final int SHRINK_BATCH_SIZE = 64;
+
 	private LinkedList list;
 	private HashMap<K, Node<K, V>> map;
 	private int maxSize;
 	private int size;
 	private EvictionListener<K, V> listener;
+	private EvictionListener<K, V> evictionHook;
+	private HitRatioCurveEstimator<K> estimator;
+	private CacheTraceRecorder recorder;
+	private MissFilter missFilter;
+	private SlowOperationListener<K> slowOperationListener;
+	private long slowOperationThreshold;
+	private int traceInterval, traceCounter;
 	private int modCount;
+	private long hitCount, missCount, evictionCount, listenerTimeNanos;
 
 	/**
 	 * Instantiates a new cache instance.
@@ -145,6 +181,31 @@ public class LRUCache<K, V> implements Iterable<LRUCache.Node<K, V>>{
 		map = new HashMap<>();
 	}
 
+	/**
+	 * Changes the capacity of the cache. If the new capacity is larger than the
+	 * current one, it takes effect immediately. If it is smaller, the surplus
+	 * key-value pairs are evicted incrementally by subsequent get and put
+	 * operations, at most {@link #SHRINK_BATCH_SIZE} pairs per operation. The
+	 * eviction listener is notified for each of them, as with a regular overflow.
+	 * @param capacity The new total amount of key-value pairs that can be stored
+	 *                 in the cache.
+	 * @throws IllegalArgumentException If the capacity is smaller than one.
+	 */
+	public void setCapacity(int capacity){
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		maxSize = capacity;
+		if (estimator != null)
+			estimator.setCapacity(capacity);
+	}
+
+	/**
+	 * @return The total amount of key-value pairs that can be stored in the cache.
+	 */
+	public int getCapacity(){
+		return maxSize;
+	}
+
 	public void setListener(EvictionListener<K, V> listener){
 		this.listener = listener;
 	}
@@ -153,21 +214,186 @@ public class LRUCache<K, V> implements Iterable<LRUCache.Node<K, V>>{
 		this.listener = null;
 	}
 
+	/**
+	 * Sets an internal callback for the evictions due to overflow, executed in
+	 * addition to the listener and before it. Used by wrappers that have to react
+	 * to evictions, without taking the listener away from the user.
+	 * @throws IllegalStateException If another hook is already set.
+	 */
+	void setEvictionHook(EvictionListener<K, V> evictionHook){
+		if (this.evictionHook != null)
+			throw new IllegalStateException("The cache already has an eviction hook");
+		this.evictionHook = evictionHook;
+	}
+
+	/**
+	 * Attaches an estimator of the hit ratio at other capacities to the cache.
+	 * From now on, the estimator observes all get and put operations and its
+	 * curve is included in the statistics of the cache.
+	 * @param estimator The estimator, or null to detach the current one.
+	 */
+	public void setHitRatioEstimator(HitRatioCurveEstimator<K> estimator){
+		this.estimator = estimator;
+		if (estimator != null)
+			estimator.setCapacity(maxSize);
+	}
+
+	/**
+	 * Attaches a filter of keys known to be missing from the underlying data
+	 * source, enabling negative caching via markAbsent() and isKnownAbsent().
+	 * @param missFilter The filter, or null to disable negative caching.
+	 */
+	public void setMissFilter(MissFilter missFilter){
+		this.missFilter = missFilter;
+	}
+
+	/**
+	 * Remembers that the key is missing from the underlying data source. The key
+	 * is only added to the miss filter, no node is allocated for it. Putting a
+	 * value for the key into the cache removes it from the filter again.
+	 * @param key The missing key.
+	 */
+	public void markAbsent(K key){
+		if (missFilter != null && !map.containsKey(key))
+			missFilter.add(key);
+	}
+
+	/**
+	 * Checks whether the key was recently marked as missing from the underlying
+	 * data source. Keys stored in the cache are never reported as missing. Due to
+	 * the probabilistic nature of the miss filter, a small fraction of keys that
+	 * were never marked may be reported as missing too.
+	 * @param key The key for the lookup.
+	 * @return True, if the key is known to be missing, false if it is unknown or
+	 *         no miss filter is attached.
+	 */
+	public boolean isKnownAbsent(K key){
+		return missFilter != null && !map.containsKey(key) && missFilter.mightContain(key);
+	}
+
+	/**
+	 * Attaches a recorder to the cache, which records every get, put, evict and
+	 * evictAll operation from now on.
+	 * @param recorder The recorder, or null to detach the current one.
+	 */
+	public void setTraceRecorder(CacheTraceRecorder recorder){
+		this.recorder = recorder;
+	}
+
+	/**
+	 * Enables tracing of slow get and put operations. Every traceInterval-th
+	 * operation is timed and reported to the listener, if it took at least
+	 * thresholdNanos. The remaining operations are not timed at all. Since the
+	 * cache doesn't lock, the reported lock wait is always zero.
+	 * @param listener The listener receiving the slow operations.
+	 * @param thresholdNanos The minimal duration of a reported operation.
+	 * @param traceInterval The sampling interval, 1 to time every operation.
+	 */
+	public void setSlowOperationListener(SlowOperationListener<K> listener, long thresholdNanos, int traceInterval){
+		if (traceInterval < 1)
+			throw new IllegalArgumentException("Trace interval must be positive: " + traceInterval);
+		this.slowOperationListener = listener;
+		this.slowOperationThreshold = thresholdNanos;
+		this.traceInterval = traceInterval;
+		this.traceCounter = 0;
+	}
+
+	public void removeSlowOperationListener(){
+		this.slowOperationListener = null;
+	}
+
+	/**
+	 * @return A snapshot of the hit, miss and eviction counts of the cache,
+	 *         along with the estimated hit ratio curve, if an estimator is attached.
+	 */
+	public CacheStatistics getStatistics(){
+		return new CacheStatistics(hitCount, missCount, evictionCount, listenerTimeNanos,
+				estimator == null ? new TreeMap<Integer, Double>() : estimator.getCurve());
+	}
+
+	/*
+	 * Raw counters for exporters polling single values, which don't need the
+	 * full snapshot of getStatistics().
+	 */
+	long hitCount(){
+		return hitCount;
+	}
+
+	long missCount(){
+		return missCount;
+	}
+
+	long evictionCount(){
+		return evictionCount;
+	}
+
+	long listenerTimeNanos(){
+		return listenerTimeNanos;
+	}
+
+	/**
+	 * @return The amount of key-value pairs still waiting to be evicted after the
+	 *         capacity of the cache was reduced.
+	 */
+	public int getMaintenanceBacklog(){
+		return Math.max(0, size - maxSize);
+	}
+
 	/**
 	 * Returns the value for the given key, if it is stored in the cache, or null
 	 * otherwise. It bumps the linked list node corresponding to that key to the
-	 * head of the list.
+	 * head of the list. Since null values can be stored as well, use getEntry()
+	 * to tell them apart from missing keys.
 	 * @param key The key for the lookup.
 	 * @return The value associated with the key or null, if not in the cache
 	 */
 	public V get(K key){
+		Node<K, V> node = getEntry(key);
+		return node == null ? null : node.value;
+	}
+
+	/**
+	 * Works like get(), but returns the node holding the key-value pair, so that a
+	 * stored null value can be distinguished from a missing key.
+	 * @param key The key for the lookup.
+	 * @return The node associated with the key or null, if not in the cache
+	 */
+	public Node<K, V> getEntry(K key){
+		if (!isTraced())
+			return doGet(key);
+		long start = System.nanoTime();
+		long listenerStart = listenerTimeNanos;
+		Node<K, V> node = doGet(key);
+		traceIfSlow(CacheOperation.GET, key, start, listenerStart);
+		return node;
+	}
+
+	/**
+	 * Checks whether the key is stored in the cache, without bumping it to the
+	 * head of the list and without affecting the statistics.
+	 * @param key The key for the lookup.
+	 * @return True, if the key is stored in the cache, even if with a null value.
+	 */
+	public boolean containsKey(K key){
+		return map.containsKey(key);
+	}
+
+	private Node<K, V> doGet(K key){
 		modCount++;
+		trim(SHRINK_BATCH_SIZE);
+		if (estimator != null)
+			estimator.recordGet(key);
+		if (recorder != null)
+			recorder.record(CacheOperation.GET, key);
 		Node<K, V> node = map.get(key);
-		if (node == null)
+		if (node == null){
+			missCount++;
 			return null;
+		}
+		hitCount++;
 		list.remove(node);
 		list.offer(node);
-		return node.value;
+		return node;
 	}
 
 	/**
@@ -178,19 +404,33 @@ public class LRUCache<K, V> implements Iterable<LRUCache.Node<K, V>>{
 	 * @param value The value associated to the key.
 	 */
 	public void put(K key, V value){
+		if (!isTraced()){
+			doPut(key, value);
+			return;
+		}
+		long start = System.nanoTime();
+		long listenerStart = listenerTimeNanos;
+		doPut(key, value);
+		traceIfSlow(CacheOperation.PUT, key, start, listenerStart);
+	}
+
+	private void doPut(K key, V value){
 		modCount++;
+		if (estimator != null)
+			estimator.recordPut(key);
+		if (recorder != null)
+			recorder.record(CacheOperation.PUT, key);
 		Node<K, V> node = map.get(key);
 		if (node == null){
+			if (missFilter != null)
+				missFilter.remove(key);
 			node = new Node<>(key, value);
 			list.offer(node);
 			map.put(key, node);
-			if (size == maxSize){
-				Node<K, V> removed = list.poll();
-				if (listener != null)
-					listener.onEvict(removed.key, removed.value);
-				map.remove(removed.key);
-			} else
-				size++;
+			size++;
+			// One more than the batch size, so that the cache keeps shrinking
+			// even if it only receives puts of new keys.
+			trim(SHRINK_BATCH_SIZE + 1);
 		} else {
 			node.value = value;
 			list.remove(node);
@@ -198,12 +438,79 @@ public class LRUCache<K, V> implements Iterable<LRUCache.Node<K, V>>{
 		}
 	}
 
+	/**
+	 * @return True, if the current operation is sampled for tracing.
+	 */
+	private boolean isTraced(){
+		if (slowOperationListener == null || ++traceCounter < traceInterval)
+			return false;
+		traceCounter = 0;
+		return true;
+	}
+
+	private void traceIfSlow(CacheOperation operation, K key, long start, long listenerStart){
+		long total = System.nanoTime() - start;
+		if (total >= slowOperationThreshold && slowOperationListener != null)
+			slowOperationListener.onSlowOperation(operation, key, total, 0, listenerTimeNanos - listenerStart);
+	}
+
+	/**
+	 * Removes nodes from the tail of the list, until the size of the cache
+	 * doesn't exceed its capacity or the given limit of removed nodes is reached.
+	 * @param limit The maximum amount of nodes to be removed.
+	 */
+	private void trim(int limit){
+		while (size > maxSize && limit-- > 0)
+			evictLast();
+	}
+
+	/**
+	 * @return The least recently used node, or null, if the cache is empty.
+	 */
+	Node<K, V> peekLast(){
+		return list.last;
+	}
+
+	/**
+	 * Bumps the node of the key to the head of the list, if the key is stored in
+	 * the cache, without counting a hit or notifying any observers.
+	 */
+	void touch(K key){
+		Node<K, V> node = map.get(key);
+		if (node != null){
+			modCount++;
+			list.remove(node);
+			list.offer(node);
+		}
+	}
+
+	/**
+	 * Removes the least recently used node from the cache, as if the cache had
+	 * overflowed. Assumes that the cache is not empty.
+	 */
+	void evictLast(){
+		modCount++;
+		Node<K, V> removed = list.poll();
+		if (evictionHook != null)
+			evictionHook.onEvict(removed.key, removed.value);
+		if (listener != null){
+			long start = System.nanoTime();
+			listener.onEvict(removed.key, removed.value);
+			listenerTimeNanos += System.nanoTime() - start;
+		}
+		map.remove(removed.key);
+		size--;
+		evictionCount++;
+	}
+
 	/**
 	 * Removes a key and its associated value from the cache.
 	 * @param key The key to be removed.
 	 */
 	public void evict(K key){
 		modCount++;
+		if (recorder != null)
+			recorder.record(CacheOperation.EVICT, key);
 		Node<K, V> node = map.get(key);
 		if (node != null) {
 			list.remove(node);
@@ -221,6 +528,8 @@ public class LRUCache<K, V> implements Iterable<LRUCache.Node<K, V>>{
 
 	public void evictAll(){
 		modCount++;
+		if (recorder != null)
+			recorder.record(CacheOperation.CLEAR, null);
 		list.clear();
 		map.clear();
 		size = 0;
@@ -0,0 +1,31 @@
+package com.lodborg.cache;
+
+/**
+ * The management interface of an LRU cache, registered by
+ * {@link CacheMetrics#registerMBean(LRUCache, String)}. The counters are
+ * cumulative, rates can be derived from them by the monitoring system.
+ */
+public interface LRUCacheMXBean {
+	int getSize();
+
+	int getCapacity();
+
+	long getHitCount();
+
+	long getMissCount();
+
+	double getHitRatio();
+
+	long getEvictionCount();
+
+	/**
+	 * @return The total time in nanoseconds spent in the eviction listener.
+	 */
+	long getListenerTimeNanos();
+
+	/**
+	 * @return The amount of key-value pairs still waiting to be evicted after
+	 *         the capacity of the cache was reduced.
+	 */
+	int getMaintenanceBacklog();
+}
@@ -0,0 +1,32 @@
+package com.lodborg.cache;
+
+/**
+ * A minimal service provider interface for metrics registries. Implementing it
+ * allows the statistics of an LRU cache to be published in any metrics library,
+ * without the cache depending on one. The cache registers each metric once and
+ * the registry polls its current value whenever it needs it, for example:
+ * <pre>
+ * public void registerGauge(String name, String cacheName, final Metric metric) {
+ *     Gauge.builder(name, metric, Metric::value).tag("cache", cacheName).register(meterRegistry);
+ * }
+ * </pre>
+ */
+public interface MetricsRegistry {
+
+	/**
+	 * A metric whose value is read on demand.
+	 */
+	interface Metric {
+		double value();
+	}
+
+	/**
+	 * Registers a value that can go up and down, such as the size of the cache.
+	 */
+	void registerGauge(String name, String cacheName, Metric metric);
+
+	/**
+	 * Registers a cumulative value that never decreases, such as the hit count.
+	 */
+	void registerCounter(String name, String cacheName, Metric metric);
+}
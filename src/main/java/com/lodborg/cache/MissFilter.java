@@ -0,0 +1,208 @@
+package com.lodborg.cache;
+
+import java.util.Arrays;
+
+/**
+ * A compact probabilistic set of keys known to be missing from the underlying
+ * data source, used by the LRU cache for negative caching. Instead of storing an
+ * entry for every missing key, the filter stores a 16-bit fingerprint of its hash
+ * in a cuckoo hash table, taking roughly two bytes per key.
+ *
+ * Like every probabilistic filter, it can report a key as missing even if it was
+ * never added, with a probability below 0.05% for a full filter. Unlike a
+ * Bloom filter, a cuckoo filter supports removal, which the cache uses to forget
+ * a key as soon as a value for it is put into the cache.
+ *
+ * The filter doesn't keep keys forever, since the data source may gain them in
+ * the meantime. It consists of two generations: new keys are added to the current
+ * one, lookups consult both of them. Once the decay time has elapsed, the older
+ * generation is discarded and the current one takes its place. A key therefore
+ * stays in the filter for at least the decay time and at most twice as long. If
+ * the current generation fills up before that, it is rotated early. Like the
+ * cache itself, the filter is not thread-safe.
+ */
+public class MissFilter {
+	private static final int SLOTS_PER_BUCKET = 4;
+	private static final int MAX_KICKS = 500;
+
+	// Undo buffers for the relocations of a failed insert, allocated only once.
+	private final int[] kickedSlots = new int[MAX_KICKS];
+	private final short[] kickedFingerprints = new short[MAX_KICKS];
+	private final int bucketMask;
+	private final long decayMillis;
+	private short[] current, older;
+	private long rotatedAt;
+	private int random = 0x2545f491;
+
+	/**
+	 * @param capacity The amount of keys that a single generation can hold.
+	 * @param decayMillis The time in milliseconds after which the generations rotate.
+	 */
+	public MissFilter(int capacity, long decayMillis){
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		if (decayMillis < 1)
+			throw new IllegalArgumentException("Decay time must be positive: " + decayMillis);
+		// Cuckoo tables with four slots per bucket work well up to a load of about 90%.
+		int needed = (int) Math.ceil(capacity / (SLOTS_PER_BUCKET * 0.9));
+		int buckets = 1;
+		while (buckets < needed)
+			buckets <<= 1;
+		this.bucketMask = buckets - 1;
+		this.decayMillis = decayMillis;
+		this.current = new short[buckets * SLOTS_PER_BUCKET];
+		this.older = new short[buckets * SLOTS_PER_BUCKET];
+		this.rotatedAt = System.currentTimeMillis();
+	}
+
+	/**
+	 * Adds a key to the filter, unless it is already reported as contained.
+	 */
+	public void add(Object key){
+		decayIfDue();
+		int hash = Hashing.mix(key);
+		short fingerprint = fingerprint(hash);
+		int bucket = hash & bucketMask;
+		if (contains(current, bucket, fingerprint) || contains(older, bucket, fingerprint))
+			return;
+		if (!insert(bucket, fingerprint)){
+			rotate();
+			insert(bucket, fingerprint);
+		}
+	}
+
+	/**
+	 * @return True, if the key might have been added to the filter within the
+	 *         decay time. False, if it definitely wasn't.
+	 */
+	public boolean mightContain(Object key){
+		decayIfDue();
+		int hash = Hashing.mix(key);
+		short fingerprint = fingerprint(hash);
+		int bucket = hash & bucketMask;
+		return contains(current, bucket, fingerprint) || contains(older, bucket, fingerprint);
+	}
+
+	/**
+	 * Removes a key from the filter. Removing a key that was never added may
+	 * remove another key with the same fingerprint, which only causes a lookup
+	 * of that key in the data source.
+	 */
+	public void remove(Object key){
+		int hash = Hashing.mix(key);
+		short fingerprint = fingerprint(hash);
+		int bucket = hash & bucketMask;
+		remove(current, bucket, fingerprint);
+		remove(older, bucket, fingerprint);
+	}
+
+	/**
+	 * Removes all keys from the filter.
+	 */
+	public void clear(){
+		current = new short[current.length];
+		older = new short[older.length];
+		rotatedAt = System.currentTimeMillis();
+	}
+
+	/**
+	 * Discards the older generation and starts a new current one.
+	 */
+	void rotate(){
+		short[] discarded = older;
+		older = current;
+		Arrays.fill(discarded, (short) 0);
+		current = discarded;
+		rotatedAt = System.currentTimeMillis();
+	}
+
+	private void decayIfDue(){
+		if (System.currentTimeMillis() - rotatedAt >= decayMillis)
+			rotate();
+	}
+
+	/**
+	 * @return A non-zero fingerprint, zero marks an empty slot.
+	 */
+	private static short fingerprint(int hash){
+		int fingerprint = (hash * 0x9e3779b9) >>> 16;
+		return (short) (fingerprint == 0 ? 1 : fingerprint);
+	}
+
+	/**
+	 * @return The other bucket the fingerprint can be stored in. Applying it twice
+	 *         yields the original bucket.
+	 */
+	private int alternate(int bucket, short fingerprint){
+		return (bucket ^ Hashing.mix(fingerprint)) & bucketMask;
+	}
+
+	private boolean contains(short[] table, int bucket, short fingerprint){
+		return indexOf(table, bucket, fingerprint) >= 0
+				|| indexOf(table, alternate(bucket, fingerprint), fingerprint) >= 0;
+	}
+
+	private void remove(short[] table, int bucket, short fingerprint){
+		int index = indexOf(table, bucket, fingerprint);
+		if (index < 0)
+			index = indexOf(table, alternate(bucket, fingerprint), fingerprint);
+		if (index >= 0)
+			table[index] = 0;
+	}
+
+	private static int indexOf(short[] table, int bucket, short fingerprint){
+		int start = bucket * SLOTS_PER_BUCKET;
+		for (int i = start; i < start + SLOTS_PER_BUCKET; i++)
+			if (table[i] == fingerprint)
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Inserts the fingerprint into the current generation, relocating existing
+	 * fingerprints to their alternate buckets if both candidate buckets are full.
+	 * @return False, if the generation is too full to take the fingerprint. The
+	 *         generation is left unchanged in that case.
+	 */
+	private boolean insert(int bucket, short fingerprint){
+		if (insertIntoBucket(bucket, fingerprint))
+			return true;
+		int other = alternate(bucket, fingerprint);
+		if (insertIntoBucket(other, fingerprint))
+			return true;
+
+		// Remember the relocations, so that they can be undone if the insert fails.
+		bucket = (nextRandom() & 1) == 0 ? bucket : other;
+		for (int kick = 0; kick < MAX_KICKS; kick++){
+			int slot = bucket * SLOTS_PER_BUCKET + (nextRandom() & (SLOTS_PER_BUCKET - 1));
+			kickedSlots[kick] = slot;
+			kickedFingerprints[kick] = current[slot];
+			current[slot] = fingerprint;
+			fingerprint = kickedFingerprints[kick];
+			bucket = alternate(bucket, fingerprint);
+			if (insertIntoBucket(bucket, fingerprint))
+				return true;
+		}
+		for (int kick = MAX_KICKS - 1; kick >= 0; kick--)
+			current[kickedSlots[kick]] = kickedFingerprints[kick];
+		return false;
+	}
+
+	private boolean insertIntoBucket(int bucket, short fingerprint){
+		int start = bucket * SLOTS_PER_BUCKET;
+		for (int i = start; i < start + SLOTS_PER_BUCKET; i++){
+			if (current[i] == 0){
+				current[i] = fingerprint;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int nextRandom(){
+		random ^= random << 13;
+		random ^= random >>> 17;
+		random ^= random << 5;
+		return random;
+	}
+}
@@ -0,0 +1,385 @@
+package com.lodborg.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe front for an LRU cache shared by several threads, with a tiny
+ * per-thread cache (L1) for the hottest keys. The shared cache is guarded by its
+ * own monitor, so every access to it costs a lock on top of the map lookup and
+ * the list update. Repeated reads of the same key from the same thread are
+ * served from the L1 instead, without touching any shared state except a single
+ * volatile read.
+ *
+ * The L1 of each thread is a 2-way set-associative array: a key can only be
+ * stored in one of the two slots of the set determined by its hash, and replaces
+ * the less recently used of them if both are taken. Every L1 slot remembers the
+ * version of the key's stripe at the time it was filled. The versions are kept
+ * in a shared array of stripes, indexed by the hash of the key. Every put or
+ * evict through the near cache increments the version of the key's stripe, and
+ * so does every eviction of the shared cache due to an overflow or a reduced
+ * capacity. An L1 slot is only used if its version is still current, so the L1
+ * never returns a value for a key that was overwritten or removed from the
+ * shared cache.
+ *
+ * Reads served by the L1 don't bump the key in the shared cache right away.
+ * Instead, each thread collects the keys it served since its last flush, every
+ * key only once, and bumps them in the shared cache in a batch. A batch is
+ * flushed after a fixed amount of L1 hits, so the shared cache still sees which
+ * keys are hot. If more distinct keys are served in between, the hints for the
+ * surplus keys are dropped, as replaying every single hit would cost as much as
+ * not having an L1 at all. The hits are added to the statistics of the shared
+ * cache with the same batches. They are not observed by a hit ratio estimator or
+ * a trace recorder attached to the shared cache.
+ *
+ * The accesses to the shared cache can be traced like the operations of the
+ * LRU cache itself. The near cache additionally measures how long a traced get or
+ * put waited for the lock of the shared cache. Reads served by the L1 never wait
+ * and are not traced.
+ *
+ * Once wrapped, the shared cache must only be accessed through the near cache,
+ * otherwise the L1 copies won't be invalidated. A cache can only be wrapped by
+ * a single near cache.
+ *
+ * @param <K> The generic type of the keys
+ * @param <V> The generic type of the values
+ */
+public class NearCache<K, V> {
+	private static final int STRIPES = 1024;
+	private static final int HINT_BUFFER_SIZE = 64;
+	private static final int HINT_FLUSH_INTERVAL = 1024;
+
+	/**
+	 * The L1 of a single thread.
+	 */
+	private static class Local {
+		private final Object[] keys;
+		private final Object[] values;
+		private final long[] versions;
+		private final boolean[] hinted;
+		private final boolean[] secondRecent;
+		private final Object[] hints = new Object[HINT_BUFFER_SIZE];
+		private final int[] hintSlots = new int[HINT_BUFFER_SIZE];
+		private int hintCount;
+		private int hits;
+		private int traceCounter;
+		private long traceStart, lockAcquired, listenerNanos;
+
+		private Local(int size){
+			keys = new Object[size];
+			values = new Object[size];
+			versions = new long[size];
+			hinted = new boolean[size];
+			secondRecent = new boolean[size / 2];
+		}
+	}
+
+	/**
+	 * The configuration of the slow operation tracing, replaced as a whole.
+	 */
+	private static class Tracing<K> {
+		private final SlowOperationListener<K> listener;
+		private final long thresholdNanos;
+		private final int interval;
+
+		private Tracing(SlowOperationListener<K> listener, long thresholdNanos, int interval){
+			this.listener = listener;
+			this.thresholdNanos = thresholdNanos;
+			this.interval = interval;
+		}
+	}
+
+	private final LRUCache<K, V> cache;
+	private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+	private final int setMask;
+	private final ThreadLocal<Local> local;
+	private volatile Tracing<K> tracing;
+	private long localHitCount;
+
+	/**
+	 * Wraps the cache with an L1 of 256 slots per thread.
+	 */
+	public NearCache(LRUCache<K, V> cache){
+		this(cache, 256);
+	}
+
+	/**
+	 * @param cache The shared cache.
+	 * @param localSize The amount of slots in the L1 of each thread, rounded up
+	 *                  to a power of two, at least two.
+	 * @throws IllegalStateException If the cache is already wrapped by another
+	 *         near cache.
+	 */
+	public NearCache(LRUCache<K, V> cache, int localSize){
+		if (localSize < 1)
+			throw new IllegalArgumentException("Local size must be positive: " + localSize);
+		int size = 2;
+		while (size < localSize)
+			size <<= 1;
+		final int slots = size;
+		this.cache = cache;
+		this.setMask = slots / 2 - 1;
+		cache.setEvictionHook(new EvictionListener<K, V>() {
+			@Override
+			public void onEvict(K key, V value) {
+				invalidate(key);
+			}
+		});
+		this.local = new ThreadLocal<Local>() {
+			@Override
+			protected Local initialValue() {
+				return new Local(slots);
+			}
+		};
+	}
+
+	/**
+	 * Returns the value for the given key from the L1 of the current thread, if it
+	 * is there and still current, or from the shared cache otherwise.
+	 * @param key The key for the lookup.
+	 * @return The value associated with the key or null, if not in the cache
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(K key){
+		Local l1 = local.get();
+		int hash = Hashing.mix(key);
+		int set = (hash >>> 16) & setMask;
+		int stripe = hash & (STRIPES - 1);
+		int slot = set << 1;
+		if (!isCurrent(l1, slot, key, stripe) && !isCurrent(l1, ++slot, key, stripe))
+			return getShared(l1, key, set, stripe);
+
+		l1.secondRecent[set] = (slot & 1) == 1;
+		V value = (V) l1.values[slot];
+		if (!l1.hinted[slot] && l1.hintCount < HINT_BUFFER_SIZE){
+			l1.hinted[slot] = true;
+			l1.hintSlots[l1.hintCount] = slot;
+			l1.hints[l1.hintCount++] = key;
+		}
+		if (++l1.hits == HINT_FLUSH_INTERVAL)
+			flushHints(l1);
+		return value;
+	}
+
+	/**
+	 * @return True, if the slot holds the key and the version of its stripe
+	 *         hasn't changed since the slot was filled.
+	 */
+	private boolean isCurrent(Local l1, int slot, K key, int stripe){
+		return key != null && key.equals(l1.keys[slot]) && l1.versions[slot] == versions.get(stripe);
+	}
+
+	/**
+	 * Looks up the key in the shared cache and stores the result in the L1.
+	 */
+	private V getShared(Local l1, K key, int set, int stripe){
+		LRUCache.Node<K, V> node;
+		V value;
+		long version;
+		boolean traced = startTrace(l1);
+		synchronized (cache) {
+			if (traced)
+				lockAcquired(l1);
+			version = versions.get(stripe);
+			node = cache.getEntry(key);
+			// Read under the lock, since puts update the value of the node in place.
+			value = node == null ? null : node.getValue();
+			if (traced)
+				workDone(l1);
+		}
+		if (traced)
+			traceIfSlow(l1, CacheOperation.GET, key);
+		if (node == null)
+			return null;
+		if (key != null){
+			// Prefer the slot already holding the key, then an empty slot, then the
+			// less recently used one.
+			int slot = set << 1;
+			Object first = l1.keys[slot], second = l1.keys[slot + 1];
+			if (!key.equals(first) && (key.equals(second)
+					|| first != null && (second == null || !l1.secondRecent[set])))
+				slot++;
+			l1.secondRecent[set] = (slot & 1) == 1;
+			l1.keys[slot] = key;
+			l1.values[slot] = value;
+			l1.versions[slot] = version;
+		}
+		return value;
+	}
+
+	/**
+	 * Inserts or updates a key-value pair in the shared cache and invalidates the
+	 * copies of the key in the L1 of all threads.
+	 */
+	public void put(K key, V value){
+		Local l1 = local.get();
+		boolean traced = startTrace(l1);
+		synchronized (cache) {
+			if (traced)
+				lockAcquired(l1);
+			cache.put(key, value);
+			invalidate(key);
+			if (traced)
+				workDone(l1);
+		}
+		if (traced)
+			traceIfSlow(l1, CacheOperation.PUT, key);
+	}
+
+	/**
+	 * Removes a key from the shared cache and invalidates the copies of the key in
+	 * the L1 of all threads.
+	 */
+	public void evict(K key){
+		synchronized (cache) {
+			cache.evict(key);
+			invalidate(key);
+		}
+	}
+
+	/**
+	 * Removes all pairs from the shared cache and invalidates the L1 of all threads.
+	 */
+	public void evictAll(){
+		synchronized (cache) {
+			cache.evictAll();
+			for (int i = 0; i < STRIPES; i++)
+				versions.incrementAndGet(i);
+		}
+	}
+
+	/**
+	 * Changes the capacity of the shared cache, see {@link LRUCache#setCapacity(int)}.
+	 * The pairs evicted due to a reduced capacity are invalidated in the L1 of all
+	 * threads, as they are removed from the shared cache.
+	 * @param capacity The new capacity of the shared cache.
+	 */
+	public void setCapacity(int capacity){
+		synchronized (cache) {
+			cache.setCapacity(capacity);
+		}
+	}
+
+	/**
+	 * Enables tracing of slow gets and puts on the shared cache. Every
+	 * traceInterval-th access of each thread to the shared cache is timed,
+	 * including the wait for its lock, and reported to the listener if it took at
+	 * least thresholdNanos. The listener is called by the accessing thread, after
+	 * it has released the lock.
+	 * @param listener The listener receiving the slow operations.
+	 * @param thresholdNanos The minimal duration of a reported operation.
+	 * @param traceInterval The sampling interval, 1 to time every access.
+	 */
+	public void setSlowOperationListener(SlowOperationListener<K> listener, long thresholdNanos, int traceInterval){
+		if (traceInterval < 1)
+			throw new IllegalArgumentException("Trace interval must be positive: " + traceInterval);
+		tracing = new Tracing<>(listener, thresholdNanos, traceInterval);
+	}
+
+	public void removeSlowOperationListener(){
+		tracing = null;
+	}
+
+	/**
+	 * @return The total amount of key-value pairs stored in the shared cache.
+	 */
+	public int size(){
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * @return The statistics of the shared cache, including the hits served by
+	 *         the L1 of all threads up to their last flush.
+	 */
+	public CacheStatistics getStatistics(){
+		synchronized (cache) {
+			CacheStatistics shared = cache.getStatistics();
+			return new CacheStatistics(shared.getHitCount() + localHitCount, shared.getMissCount(),
+					shared.getEvictionCount(), shared.getListenerTimeNanos(), shared.getHitRatioCurve());
+		}
+	}
+
+	/**
+	 * Replays the pending recency hints of the current thread on the shared cache.
+	 */
+	public void flushHints(){
+		flushHints(local.get());
+	}
+
+	/**
+	 * Drops the L1 of the current thread, after replaying its pending recency
+	 * hints. Threads of a pool that no longer use the cache should call it, so
+	 * that their L1 doesn't keep the keys and values reachable.
+	 */
+	public void clearLocal(){
+		flushHints();
+		local.remove();
+	}
+
+	/**
+	 * Increments the version of the key's stripe. Called while holding the lock
+	 * of the shared cache.
+	 */
+	private void invalidate(K key){
+		versions.incrementAndGet(Hashing.mix(key) & (STRIPES - 1));
+	}
+
+	/**
+	 * @return True, if the current access of the thread to the shared cache is
+	 *         sampled for tracing. In that case, its start time is recorded.
+	 */
+	private boolean startTrace(Local l1){
+		Tracing<K> tracing = this.tracing;
+		if (tracing == null || ++l1.traceCounter < tracing.interval)
+			return false;
+		l1.traceCounter = 0;
+		l1.traceStart = System.nanoTime();
+		return true;
+	}
+
+	/**
+	 * Must be called right after acquiring the lock of the shared cache.
+	 */
+	private void lockAcquired(Local l1){
+		l1.lockAcquired = System.nanoTime();
+		l1.listenerNanos = -cache.listenerTimeNanos();
+	}
+
+	/**
+	 * Must be called before releasing the lock of the shared cache.
+	 */
+	private void workDone(Local l1){
+		l1.listenerNanos += cache.listenerTimeNanos();
+	}
+
+	private void traceIfSlow(Local l1, CacheOperation operation, K key){
+		long total = System.nanoTime() - l1.traceStart;
+		Tracing<K> tracing = this.tracing;
+		if (tracing != null && total >= tracing.thresholdNanos)
+			tracing.listener.onSlowOperation(operation, key, total, l1.lockAcquired - l1.traceStart, l1.listenerNanos);
+	}
+
+	private void flushHints(Local l1){
+		if (l1.hintCount == 0 && l1.hits == 0)
+			return;
+		synchronized (cache) {
+			replayHints(l1);
+		}
+	}
+
+	/**
+	 * Must be called while holding the lock of the shared cache.
+	 */
+	@SuppressWarnings("unchecked")
+	private void replayHints(Local l1){
+		for (int i = 0; i < l1.hintCount; i++){
+			cache.touch((K) l1.hints[i]);
+			l1.hints[i] = null;
+			l1.hinted[l1.hintSlots[i]] = false;
+		}
+		l1.hintCount = 0;
+		localHitCount += l1.hits;
+		l1.hits = 0;
+	}
+}
@@ -0,0 +1,291 @@
+package com.lodborg.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An LRU cache shared by several partitions (for example tenants), which compete
+ * for a single global capacity. Each partition is guaranteed a minimum amount of
+ * key-value pairs, which are never evicted in favor of other partitions, and is
+ * limited to a maximum amount, which it can't exceed even if the cache has free
+ * capacity.
+ *
+ * Every partition is backed by its own LRUCache, so the keys of different
+ * partitions never collide and each partition keeps its own statistics and
+ * eviction listener. The recency of the entries is tracked across partitions by
+ * a global access counter. Whenever a put overflows the global capacity, the
+ * victim is the globally least recently used pair among all partitions holding
+ * more than their guaranteed minimum. Whenever it overflows the maximum of its
+ * own partition, the victim is the least recently used pair of that partition.
+ *
+ * The partitions holding more than their guaranteed minimum are kept in a binary
+ * heap, ordered by the access time of their least recently used pair. Finding
+ * the victim takes constant time, and every operation that changes the size or
+ * the least recently used pair of a partition restores the heap in time
+ * logarithmic in the amount of partitions.
+ *
+ * @param <N> The generic type of the partition names
+ * @param <K> The generic type of the keys
+ * @param <V> The generic type of the values
+ */
+public class PartitionedLRUCache<N, K, V> {
+
+	/**
+	 * The value stored in the cache of a partition, along with the global time
+	 * of its last access.
+	 */
+	private static class Entry<V> {
+		private final V value;
+		private long lastAccess;
+
+		private Entry(V value, long lastAccess){
+			this.value = value;
+			this.lastAccess = lastAccess;
+		}
+	}
+
+	private static class Partition<K, V> {
+		private final LRUCache<K, Entry<V>> cache = new LRUCache<>(Integer.MAX_VALUE);
+		private final int minSize;
+		private final int maxSize;
+		// The position in the heap of eviction candidates, or -1 if not in it.
+		private int heapIndex = -1;
+		private long tailAccess;
+
+		private Partition(int minSize, int maxSize){
+			this.minSize = minSize;
+			this.maxSize = maxSize;
+		}
+	}
+
+	private final HashMap<N, Partition<K, V>> partitions = new HashMap<>();
+	private final ArrayList<Partition<K, V>> candidates = new ArrayList<>();
+	private final int maxSize;
+	private int reservedSize;
+	private int size;
+	private long clock;
+
+	/**
+	 * Instantiates a new cache without any partitions.
+	 * @param capacity The total amount of key-value pairs that can be stored in
+	 *                 all partitions together.
+	 */
+	public PartitionedLRUCache(int capacity){
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		maxSize = capacity;
+	}
+
+	/**
+	 * Adds a new partition to the cache.
+	 * @param name The name of the partition.
+	 * @param minSize The amount of key-value pairs guaranteed to the partition.
+	 * @param maxSize The maximum amount of key-value pairs in the partition.
+	 * @throws IllegalArgumentException If the partition already exists, if the
+	 *         sizes are inconsistent, or if the guaranteed sizes of all partitions
+	 *         together would exceed the capacity of the cache.
+	 */
+	public void addPartition(N name, int minSize, int maxSize){
+		if (partitions.containsKey(name))
+			throw new IllegalArgumentException("Partition already exists: " + name);
+		if (minSize < 0 || maxSize < 1 || maxSize < minSize)
+			throw new IllegalArgumentException("Invalid partition sizes: min=" + minSize + ", max=" + maxSize);
+		if (reservedSize + minSize > this.maxSize)
+			throw new IllegalArgumentException("Guaranteed sizes exceed the capacity: " + (reservedSize + minSize));
+		partitions.put(name, new Partition<K, V>(minSize, maxSize));
+		reservedSize += minSize;
+	}
+
+	/**
+	 * @return The names of all partitions.
+	 */
+	public Set<N> partitions(){
+		return Collections.unmodifiableSet(partitions.keySet());
+	}
+
+	/**
+	 * Sets the listener notified about the pairs of a partition that are evicted
+	 * due to an overflow of the cache or of the partition.
+	 */
+	public void setListener(N name, final EvictionListener<K, V> listener){
+		partition(name).cache.setListener(new EvictionListener<K, Entry<V>>() {
+			@Override
+			public void onEvict(K key, Entry<V> entry) {
+				listener.onEvict(key, entry.value);
+			}
+		});
+	}
+
+	public void removeListener(N name){
+		partition(name).cache.removeListener();
+	}
+
+	/**
+	 * Returns the value for the given key in the given partition, if it is stored
+	 * in the cache, or null otherwise. Marks the pair as the most recently used one.
+	 */
+	public V get(N name, K key){
+		Partition<K, V> partition = partition(name);
+		Entry<V> entry = partition.cache.get(key);
+		if (entry == null)
+			return null;
+		entry.lastAccess = ++clock;
+		updateCandidate(partition);
+		return entry.value;
+	}
+
+	/**
+	 * Inserts a new key-value pair in the given partition, or updates the value
+	 * associated with a key already in it. If the partition or the whole cache
+	 * overflows, a pair is evicted as described above.
+	 */
+	public void put(N name, K key, V value){
+		Partition<K, V> partition = partition(name);
+		int before = partition.cache.size();
+		partition.cache.put(key, new Entry<>(value, ++clock));
+		if (partition.cache.size() > before){
+			size++;
+			if (partition.cache.size() > partition.maxSize){
+				partition.cache.evictLast();
+				size--;
+			}
+		}
+		updateCandidate(partition);
+		if (size > maxSize){
+			// The guaranteed sizes never exceed the capacity, so an overflowing cache
+			// always contains a partition above its guaranteed size.
+			Partition<K, V> victim = candidates.get(0);
+			victim.cache.evictLast();
+			size--;
+			updateCandidate(victim);
+		}
+	}
+
+	/**
+	 * Removes a key and its associated value from the given partition.
+	 */
+	public void evict(N name, K key){
+		Partition<K, V> partition = partition(name);
+		int before = partition.cache.size();
+		partition.cache.evict(key);
+		size -= before - partition.cache.size();
+		updateCandidate(partition);
+	}
+
+	/**
+	 * Removes all key-value pairs from the given partition.
+	 */
+	public void evictAll(N name){
+		Partition<K, V> partition = partition(name);
+		size -= partition.cache.size();
+		partition.cache.evictAll();
+		updateCandidate(partition);
+	}
+
+	/**
+	 * @return The total amount of key-value pairs stored in all partitions.
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * @return The amount of key-value pairs stored in the given partition.
+	 */
+	public int size(N name){
+		return partition(name).cache.size();
+	}
+
+	public int getCapacity(){
+		return maxSize;
+	}
+
+	/**
+	 * @return The hit, miss and eviction counts of the given partition.
+	 */
+	public CacheStatistics getStatistics(N name){
+		return partition(name).cache.getStatistics();
+	}
+
+	/**
+	 * @return A map of the statistics of all partitions, mapped by their names.
+	 */
+	public Map<N, CacheStatistics> getStatistics(){
+		Map<N, CacheStatistics> statistics = new HashMap<>();
+		for (Map.Entry<N, Partition<K, V>> partition : partitions.entrySet())
+			statistics.put(partition.getKey(), partition.getValue().cache.getStatistics());
+		return statistics;
+	}
+
+	/**
+	 * Adds the partition to the heap of eviction candidates, moves it within the
+	 * heap or removes it from there, after its size or its least recently used
+	 * pair may have changed.
+	 */
+	private void updateCandidate(Partition<K, V> partition){
+		if (partition.cache.size() <= partition.minSize){
+			if (partition.heapIndex != -1){
+				int index = partition.heapIndex;
+				Partition<K, V> last = candidates.remove(candidates.size() - 1);
+				partition.heapIndex = -1;
+				if (last != partition){
+					place(last, index);
+					restoreHeap(index);
+				}
+			}
+			return;
+		}
+		long tailAccess = partition.cache.peekLast().getValue().lastAccess;
+		if (partition.heapIndex == -1){
+			partition.tailAccess = tailAccess;
+			candidates.add(partition);
+			place(partition, candidates.size() - 1);
+			restoreHeap(partition.heapIndex);
+		} else if (partition.tailAccess != tailAccess){
+			partition.tailAccess = tailAccess;
+			restoreHeap(partition.heapIndex);
+		}
+	}
+
+	/**
+	 * Moves the partition at the given position of the heap up or down, until it
+	 * is ordered with respect to its parent and its children.
+	 */
+	private void restoreHeap(int index){
+		Partition<K, V> partition = candidates.get(index);
+		while (index > 0){
+			int parent = (index - 1) / 2;
+			if (candidates.get(parent).tailAccess <= partition.tailAccess)
+				break;
+			place(candidates.get(parent), index);
+			index = parent;
+		}
+		while (true){
+			int child = 2 * index + 1;
+			if (child >= candidates.size())
+				break;
+			if (child + 1 < candidates.size() && candidates.get(child + 1).tailAccess < candidates.get(child).tailAccess)
+				child++;
+			if (partition.tailAccess <= candidates.get(child).tailAccess)
+				break;
+			place(candidates.get(child), index);
+			index = child;
+		}
+		place(partition, index);
+	}
+
+	private void place(Partition<K, V> partition, int index){
+		candidates.set(index, partition);
+		partition.heapIndex = index;
+	}
+
+	private Partition<K, V> partition(N name){
+		Partition<K, V> partition = partitions.get(name);
+		if (partition == null)
+			throw new IllegalArgumentException("Unknown partition: " + name);
+		return partition;
+	}
+}
@@ -0,0 +1,177 @@
+package com.lodborg.cache;
+
+import java.util.Arrays;
+
+/**
+ * An LRU stack of int keys that simulates several LRU caches of increasing sizes
+ * at once. Since a smaller LRU cache always holds a subset of a larger one fed
+ * with the same accesses, a single list ordered by recency is enough: a key is
+ * held by every simulated cache whose size exceeds its position in the list.
+ *
+ * Instead of computing the exact position of a key, the list is divided into
+ * levels by the simulated sizes, and every node remembers its level. Level 0
+ * holds the first sizes[0] nodes, level 1 the nodes up to position sizes[1] and
+ * so on. Moving a node to the head shifts the last node of every level above the
+ * node's old position down by one level, so an access costs time linear in the
+ * amount of sizes, not in the length of the list.
+ *
+ * The nodes, the list and the hash index are kept in primitive arrays, so the
+ * accesses don't allocate any objects.
+ */
+class ShadowStack {
+	private static final int NIL = -1;
+
+	private final int[] sizes;
+	private final int capacity;
+	private final int[] keys, prev, next, level;
+	private final int[] tails;
+	private final int[] table;
+	private final int mask;
+	private int head = NIL, last = NIL, size;
+
+	/**
+	 * @param sizes The simulated sizes, distinct and in ascending order.
+	 */
+	ShadowStack(int[] sizes){
+		this.sizes = sizes.clone();
+		this.capacity = sizes[sizes.length - 1];
+		keys = new int[capacity];
+		prev = new int[capacity];
+		next = new int[capacity];
+		level = new int[capacity];
+		tails = new int[sizes.length];
+		Arrays.fill(tails, NIL);
+		int tableSize = 2;
+		while (tableSize < capacity * 2)
+			tableSize <<= 1;
+		table = new int[tableSize];
+		mask = tableSize - 1;
+	}
+
+	/**
+	 * Moves the key to the head of the stack, inserting it if necessary.
+	 * @return The index of the smallest simulated size that held the key before
+	 *         the access, or the amount of sizes, if none of them did.
+	 */
+	int access(int key){
+		int node = find(key);
+		if (node == NIL){
+			insert(key);
+			return sizes.length;
+		}
+		int oldLevel = level[node];
+		if (node == head)
+			return oldLevel;
+		if (tails[oldLevel] == node)
+			tails[oldLevel] = prev[node];
+		unlink(node);
+		linkHead(node);
+		level[node] = 0;
+		for (int i = 0; i < oldLevel; i++)
+			shiftTail(i);
+		return oldLevel;
+	}
+
+	/**
+	 * @return All keys in the stack, the least recently used first.
+	 */
+	int[] keysFromLeastRecent(){
+		int[] result = new int[size];
+		int i = 0;
+		for (int node = last; node != NIL; node = prev[node])
+			result[i++] = keys[node];
+		return result;
+	}
+
+	private void insert(int key){
+		int node;
+		if (size == capacity){
+			node = last;
+			tails[sizes.length - 1] = NIL;
+			removeFromTable(node);
+			unlink(node);
+			size--;
+		} else
+			node = size;
+		keys[node] = key;
+		level[node] = 0;
+		linkHead(node);
+		addToTable(node);
+		size++;
+		for (int i = 0; i < sizes.length; i++){
+			if (tails[i] != NIL)
+				shiftTail(i);
+			else if (size == sizes[i])
+				tails[i] = last;
+		}
+	}
+
+	/**
+	 * Moves the last node of a full level to the next level, after a node was
+	 * put at the head of the stack.
+	 */
+	private void shiftTail(int i){
+		int tail = tails[i];
+		level[tail] = i + 1;
+		tails[i] = prev[tail];
+	}
+
+	private void linkHead(int node){
+		prev[node] = NIL;
+		next[node] = head;
+		if (head != NIL)
+			prev[head] = node;
+		else
+			last = node;
+		head = node;
+	}
+
+	private void unlink(int node){
+		if (prev[node] != NIL)
+			next[prev[node]] = next[node];
+		else
+			head = next[node];
+		if (next[node] != NIL)
+			prev[next[node]] = prev[node];
+		else
+			last = prev[node];
+	}
+
+	/**
+	 * The table uses open addressing with linear probing and stores node + 1,
+	 * zero marks an empty slot. The keys are already mixed hashes.
+	 */
+	private int find(int key){
+		for (int i = key & mask; table[i] != 0; i = (i + 1) & mask){
+			if (keys[table[i] - 1] == key)
+				return table[i] - 1;
+		}
+		return NIL;
+	}
+
+	private void addToTable(int node){
+		int i = keys[node] & mask;
+		while (table[i] != 0)
+			i = (i + 1) & mask;
+		table[i] = node + 1;
+	}
+
+	/**
+	 * Removes the node from the table, shifting back the entries of the same
+	 * probe sequence, so that no tombstones are needed.
+	 */
+	private void removeFromTable(int node){
+		int i = keys[node] & mask;
+		while (table[i] != node + 1)
+			i = (i + 1) & mask;
+		table[i] = 0;
+		for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask){
+			int ideal = keys[table[j] - 1] & mask;
+			if (((j - ideal) & mask) >= ((j - i) & mask)){
+				table[i] = table[j];
+				table[j] = 0;
+				i = j;
+			}
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package com.lodborg.cache;
+
+/**
+ * This interface can be used in conjunction with the LRU Cache and defines a
+ * callback that will be executed whenever a traced get or put operation takes
+ * longer than the configured threshold. Only a sample of the operations is
+ * traced, see {@link LRUCache#setSlowOperationListener(SlowOperationListener, long, int)}
+ * and {@link NearCache#setSlowOperationListener(SlowOperationListener, long, int)}.
+ *
+ * The total time of an operation consists of the time spent waiting for the lock
+ * guarding the cache, the time spent in the eviction listener, and the remaining
+ * work of the cache. The LRU cache itself doesn't lock, so it always reports no
+ * lock wait, and the wait of callers synchronizing around it on their own is not
+ * measured. The near cache measures the wait for the lock of its shared cache.
+ * A long lock wait points to contention on the cache. A long remaining time has
+ * no single cause: slow hashCode() or equals() methods of the keys, a trace
+ * recorder waiting for its next segment, or a pause of the whole JVM all look
+ * the same.
+ */
+public interface SlowOperationListener<K> {
+	void onSlowOperation(CacheOperation operation, K key, long totalNanos, long lockWaitNanos, long listenerNanos);
+}
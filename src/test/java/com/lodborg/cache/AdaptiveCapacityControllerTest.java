@@ -0,0 +1,91 @@
+package com.lodborg.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveCapacityControllerTest {
+
+	private static void loopOverKeys(LRUCache<Integer, Integer> cache, int keys, int rounds){
+		for (int round = 0; round < rounds; round++){
+			for (int i = 0; i < keys; i++){
+				if (cache.get(i) == null)
+					cache.put(i, i);
+			}
+		}
+	}
+
+	private static AdaptiveCapacityController<Integer> controller(LRUCache<Integer, Integer> cache,
+	                                                             double target, int min, int max){
+		HitRatioCurveEstimator<Integer> estimator = new HitRatioCurveEstimator<>(1, 0.5, 1, 2, 4);
+		return new AdaptiveCapacityController<>(cache, estimator, target, min, max, 100, 0.01, 2);
+	}
+
+	@Test
+	public void test_waitsForSamples(){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(100);
+		AdaptiveCapacityController<Integer> controller = controller(cache, 0.9, 10, 1000);
+		loopOverKeys(cache, 99, 1);
+		assertEquals(100, controller.adjust());
+		assertEquals(100, cache.getCapacity());
+	}
+
+	@Test
+	public void test_growsToReachTarget(){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(100);
+		AdaptiveCapacityController<Integer> controller = controller(cache, 0.9, 10, 1000);
+		loopOverKeys(cache, 150, 20);
+		assertEquals(0, cache.getStatistics().getHitRatio(), 0.0001);
+		assertEquals(200, controller.adjust());
+		assertEquals(200, cache.getCapacity());
+
+		// The counts were discarded, so the next adjustment waits for new samples.
+		assertEquals(200, controller.adjust());
+		loopOverKeys(cache, 150, 20);
+		assertEquals(200, controller.adjust());
+	}
+
+	@Test
+	public void test_growthLimitedByStepAndBounds(){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(100);
+		AdaptiveCapacityController<Integer> controller = controller(cache, 0.9, 10, 1000);
+		loopOverKeys(cache, 1000, 5);
+		assertEquals(200, controller.adjust());
+
+		cache = new LRUCache<>(100);
+		controller = controller(cache, 0.9, 10, 150);
+		loopOverKeys(cache, 150, 20);
+		assertEquals(150, controller.adjust());
+	}
+
+	@Test
+	public void test_shrinksWhenSmallerCapacityReachesTarget(){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(100);
+		AdaptiveCapacityController<Integer> controller = controller(cache, 0.9, 10, 1000);
+		loopOverKeys(cache, 20, 50);
+		assertEquals(50, controller.adjust());
+		assertEquals(50, cache.getCapacity());
+
+		cache = new LRUCache<>(100);
+		controller = controller(cache, 0.9, 80, 1000);
+		loopOverKeys(cache, 20, 50);
+		assertEquals(80, controller.adjust());
+	}
+
+	@Test
+	public void test_noShrinkWithinTolerance(){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(100);
+		HitRatioCurveEstimator<Integer> estimator = new HitRatioCurveEstimator<>(1, 0.5, 1, 2, 4);
+		AdaptiveCapacityController<Integer> controller =
+				new AdaptiveCapacityController<>(cache, estimator, 0.9, 10, 1000, 100, 0.1, 2);
+		// 20 keys looped 10 times: every capacity from 50 up has a hit ratio of 0.9.
+		loopOverKeys(cache, 20, 10);
+		assertEquals(0.9, estimator.getCurve().get(50), 0.0001);
+		assertEquals(100, controller.adjust());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void test_invalidBounds(){
+		controller(new LRUCache<Integer, Integer>(100), 0.9, 100, 10);
+	}
+}
@@ -0,0 +1,72 @@
+package com.lodborg.cache;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CacheMetricsTest {
+
+	private static class MapRegistry implements MetricsRegistry {
+		Map<String, Metric> gauges = new HashMap<>();
+		Map<String, Metric> counters = new HashMap<>();
+
+		@Override
+		public void registerGauge(String name, String cacheName, Metric metric) {
+			gauges.put(cacheName + "/" + name, metric);
+		}
+
+		@Override
+		public void registerCounter(String name, String cacheName, Metric metric) {
+			counters.put(cacheName + "/" + name, metric);
+		}
+	}
+
+	@Test
+	public void test_registerMBean() throws Exception {
+		LRUCache<Integer, Integer> cache = new LRUCache<>(2);
+		ObjectName name = CacheMetrics.registerMBean(cache, "test_registerMBean");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			cache.put(1, 11);
+			cache.put(2, 12);
+			cache.put(3, 13);
+			cache.get(3);
+			cache.get(1);
+			assertEquals(2, server.getAttribute(name, "Size"));
+			assertEquals(2, server.getAttribute(name, "Capacity"));
+			assertEquals(1L, server.getAttribute(name, "HitCount"));
+			assertEquals(1L, server.getAttribute(name, "MissCount"));
+			assertEquals(0.5, (Double) server.getAttribute(name, "HitRatio"), 0.0001);
+			assertEquals(1L, server.getAttribute(name, "EvictionCount"));
+			assertEquals(0, server.getAttribute(name, "MaintenanceBacklog"));
+		} finally {
+			CacheMetrics.unregisterMBean("test_registerMBean");
+		}
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+	}
+
+	@Test
+	public void test_bindToRegistry(){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(4);
+		MapRegistry registry = new MapRegistry();
+		CacheMetrics.bindTo(cache, "users", registry);
+		assertEquals(3, registry.gauges.size());
+		assertEquals(4, registry.counters.size());
+		for (int i = 0; i < 4; i++)
+			cache.put(i, i);
+		cache.setCapacity(1);
+		assertEquals(4, registry.gauges.get("users/" + CacheMetrics.SIZE).value(), 0);
+		assertEquals(1, registry.gauges.get("users/" + CacheMetrics.CAPACITY).value(), 0);
+		assertEquals(3, registry.gauges.get("users/" + CacheMetrics.MAINTENANCE_BACKLOG).value(), 0);
+		cache.get(3);
+		assertEquals(0, registry.gauges.get("users/" + CacheMetrics.MAINTENANCE_BACKLOG).value(), 0);
+		assertEquals(3, registry.counters.get("users/" + CacheMetrics.EVICTIONS).value(), 0);
+		assertEquals(1, registry.counters.get("users/" + CacheMetrics.HITS).value(), 0);
+	}
+}
@@ -0,0 +1,202 @@
+package com.lodborg.cache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CacheTraceReplayerTest {
+	private static final int RECORDS_PER_SEGMENT = 4;
+	private static final int SEGMENT_SIZE = CacheTraceRecorder.HEADER_SIZE
+			+ RECORDS_PER_SEGMENT * CacheTraceRecorder.RECORD_SIZE;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static void access(LRUCache<String, Integer> cache, int keys, int rounds){
+		for (int round = 0; round < rounds; round++){
+			for (int i = 0; i < keys; i++){
+				if (cache.get("key" + i) == null)
+					cache.put("key" + i, i);
+			}
+		}
+	}
+
+	@Test
+	public void test_replaySameCapacity() throws IOException {
+		File dir = folder.getRoot();
+		LRUCache<String, Integer> cache = new LRUCache<>(3);
+		try (CacheTraceRecorder recorder = new CacheTraceRecorder(dir, "users", SEGMENT_SIZE, 100)) {
+			cache.setTraceRecorder(recorder);
+			access(cache, 4, 3);
+			cache.evict("key0");
+			assertEquals(25, recorder.getRecordCount());
+		}
+		List<File> segments = CacheTraceReplayer.findSegments(dir, "users");
+		assertEquals(7, segments.size());
+
+		CacheTraceReplayer.Result result = CacheTraceReplayer.replay(segments, new LRUCache<Integer, Object>(3));
+		assertEquals(25, result.getOperations());
+		CacheStatistics expected = cache.getStatistics();
+		assertEquals(expected.getHitCount(), result.getStatistics().getHitCount());
+		assertEquals(expected.getMissCount(), result.getStatistics().getMissCount());
+		assertEquals(expected.getEvictionCount(), result.getStatistics().getEvictionCount());
+	}
+
+	@Test
+	public void test_replayEvictAll() throws IOException {
+		File dir = folder.getRoot();
+		LRUCache<String, Integer> cache = new LRUCache<>(4);
+		try (CacheTraceRecorder recorder = new CacheTraceRecorder(dir, "users", SEGMENT_SIZE, 100)) {
+			cache.setTraceRecorder(recorder);
+			access(cache, 4, 2);
+			cache.evictAll();
+			access(cache, 4, 1);
+			assertEquals(21, recorder.getRecordCount());
+		}
+		CacheTraceReplayer.Result result = CacheTraceReplayer.replay(
+				CacheTraceReplayer.findSegments(dir, "users"), new LRUCache<Integer, Object>(4));
+		assertEquals(21, result.getOperations());
+		assertEquals(4, result.getStatistics().getHitCount());
+		assertEquals(8, result.getStatistics().getMissCount());
+		assertEquals(cache.getStatistics().getHitCount(), result.getStatistics().getHitCount());
+	}
+
+	@Test
+	public void test_replayLargerCapacity() throws IOException {
+		File dir = folder.getRoot();
+		LRUCache<String, Integer> cache = new LRUCache<>(3);
+		try (CacheTraceRecorder recorder = new CacheTraceRecorder(dir, "users", SEGMENT_SIZE, 100)) {
+			cache.setTraceRecorder(recorder);
+			access(cache, 4, 3);
+		}
+		assertEquals(0, cache.getStatistics().getHitCount());
+		CacheTraceReplayer.Result result = CacheTraceReplayer.replay(
+				CacheTraceReplayer.findSegments(dir, "users"), new LRUCache<Integer, Object>(4));
+		assertEquals(8, result.getStatistics().getHitCount());
+		assertEquals(0, result.getStatistics().getEvictionCount());
+	}
+
+	@Test
+	public void test_rotationKeepsRecentSegments() throws IOException {
+		File dir = folder.getRoot();
+		LRUCache<String, Integer> cache = new LRUCache<>(3);
+		try (CacheTraceRecorder recorder = new CacheTraceRecorder(dir, "users", SEGMENT_SIZE, 2)) {
+			cache.setTraceRecorder(recorder);
+			for (int i = 0; i < 10; i++)
+				cache.get("key" + i);
+		}
+		List<File> segments = CacheTraceReplayer.findSegments(dir, "users");
+		assertEquals(2, segments.size());
+		assertEquals(CacheTraceRecorder.segmentFile(dir, "users", 2), segments.get(0));
+		assertEquals(CacheTraceRecorder.segmentFile(dir, "users", 3), segments.get(1));
+		CacheTraceReplayer.Result result = CacheTraceReplayer.replay(segments, new LRUCache<Integer, Object>(3));
+		assertEquals(6, result.getOperations());
+		assertEquals(6, result.getStatistics().getMissCount());
+	}
+
+	@Test
+	public void test_otherPrefixIgnored() throws IOException {
+		File dir = folder.getRoot();
+		new CacheTraceRecorder(dir, "users", SEGMENT_SIZE, 2).close();
+		assertTrue(CacheTraceReplayer.findSegments(dir, "orders").isEmpty());
+		assertEquals(1, CacheTraceReplayer.findSegments(dir, "users").size());
+	}
+
+	@Test(expected = IOException.class)
+	public void test_invalidSegment() throws IOException {
+		File file = folder.newFile("users-00000001" + CacheTraceRecorder.SUFFIX);
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(new byte[SEGMENT_SIZE]);
+		}
+		CacheTraceReplayer.replay(Collections.singletonList(file), new LRUCache<Integer, Object>(3));
+	}
+
+	@Test
+	public void test_restartContinuesAfterExistingSegments() throws IOException {
+		File dir = folder.getRoot();
+		LRUCache<String, Integer> cache = new LRUCache<>(3);
+		try (CacheTraceRecorder recorder = new CacheTraceRecorder(dir, "users", SEGMENT_SIZE, 100)) {
+			cache.setTraceRecorder(recorder);
+			for (int i = 0; i < 10; i++)
+				cache.get("key" + i);
+		}
+		try (CacheTraceRecorder recorder = new CacheTraceRecorder(dir, "users", SEGMENT_SIZE, 100)) {
+			cache.setTraceRecorder(recorder);
+			cache.get("key10");
+		}
+		List<File> segments = CacheTraceReplayer.findSegments(dir, "users");
+		assertEquals(4, segments.size());
+		assertEquals(CacheTraceRecorder.segmentFile(dir, "users", 4), segments.get(3));
+		assertEquals(11, CacheTraceReplayer.replay(segments, new LRUCache<Integer, Object>(3)).getOperations());
+	}
+
+	@Test
+	public void test_restartCountsExistingSegments() throws IOException {
+		File dir = folder.getRoot();
+		LRUCache<String, Integer> cache = new LRUCache<>(3);
+		try (CacheTraceRecorder recorder = new CacheTraceRecorder(dir, "users", SEGMENT_SIZE, 100)) {
+			cache.setTraceRecorder(recorder);
+			for (int i = 0; i < 10; i++)
+				cache.get("key" + i);
+		}
+		try (CacheTraceRecorder recorder = new CacheTraceRecorder(dir, "users", SEGMENT_SIZE, 2)) {
+			cache.setTraceRecorder(recorder);
+			cache.get("key10");
+		}
+		List<File> segments = CacheTraceReplayer.findSegments(dir, "users");
+		assertEquals(2, segments.size());
+		assertEquals(CacheTraceRecorder.segmentFile(dir, "users", 3), segments.get(0));
+		assertEquals(3, CacheTraceReplayer.replay(segments, new LRUCache<Integer, Object>(3)).getOperations());
+	}
+
+	@Test
+	public void test_invalidOperation() throws IOException {
+		File dir = folder.getRoot();
+		LRUCache<String, Integer> cache = new LRUCache<>(3);
+		try (CacheTraceRecorder recorder = new CacheTraceRecorder(dir, "users", SEGMENT_SIZE, 100)) {
+			cache.setTraceRecorder(recorder);
+			cache.get("key0");
+			cache.get("key1");
+		}
+		File segment = CacheTraceRecorder.segmentFile(dir, "users", 1);
+		int offset = CacheTraceRecorder.HEADER_SIZE + CacheTraceRecorder.RECORD_SIZE;
+		try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+			raf.seek(offset + 4);
+			raf.write(9);
+		}
+		try {
+			CacheTraceReplayer.replay(Collections.singletonList(segment), new LRUCache<Integer, Object>(3));
+			fail();
+		} catch (IOException e){
+			assertTrue(e.getMessage().contains(segment.toString()));
+			assertTrue(e.getMessage().contains("offset " + offset));
+		}
+	}
+
+	@Test
+	public void test_failedRotationStopsRecording() throws IOException {
+		File dir = folder.getRoot();
+		// A non-empty directory posing as the oldest segment can't be deleted.
+		File blocked = folder.newFolder("users-00000001" + CacheTraceRecorder.SUFFIX);
+		assertTrue(new File(blocked, "data").createNewFile());
+		LRUCache<String, Integer> cache = new LRUCache<>(3);
+		try (CacheTraceRecorder recorder = new CacheTraceRecorder(dir, "users", SEGMENT_SIZE, 2)) {
+			cache.setTraceRecorder(recorder);
+			for (int i = 0; i < 10; i++)
+				cache.put("key" + i, i);
+			assertEquals(2 * RECORDS_PER_SEGMENT, recorder.getRecordCount());
+			assertNotNull(recorder.getFailure());
+		}
+		assertEquals(3, cache.size());
+		assertEquals(Integer.valueOf(9), cache.get("key9"));
+	}
+}
@@ -48,4 +48,19 @@ public class EvictionListenerTest {
 		cache.evictAll();
 		verify(mock, never()).onEvict(any(Integer.class), any(Integer.class));
 	}
+
+	@Test
+	public void test_executeOnShrink(){
+		EvictionListener mock = mock(EvictionListener.class);
+		LRUCache<Integer, Integer> cache = new LRUCache<>(3);
+		cache.setListener(mock);
+		cache.put(1, 123);
+		cache.put(2, 222);
+		cache.put(3, 333);
+		cache.setCapacity(1);
+		verify(mock, never()).onEvict(any(Integer.class), any(Integer.class));
+		cache.get(3);
+		verify(mock).onEvict(1, 123);
+		verify(mock).onEvict(2, 222);
+	}
 }
@@ -0,0 +1,92 @@
+package com.lodborg.cache;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures the overhead of a HitRatioCurveEstimator on a cache filled on demand,
+ * with a get for every access and a put for every miss. The same cache replays
+ * the same chunk of accesses with and without the estimator attached, in
+ * alternating order. Not run as part of the tests, run it with:
+ * <pre>
+ * java -cp target/classes:target/test-classes com.lodborg.cache.HitRatioCurveEstimatorBenchmark
+ * </pre>
+ */
+public class HitRatioCurveEstimatorBenchmark {
+	private static final int CAPACITY = 50000;
+	private static final int KEYS = 400000;
+	private static final int ACCESSES = 10000000;
+	private static final int CHUNK = 250000;
+	private static final int WARMUP = 10000;
+	private static final int PAIRS = 400;
+
+	private static String[] accesses;
+
+	private static long run(LRUCache<String, Integer> cache, int from, int length){
+		long start = System.nanoTime();
+		for (int i = from; i < from + length; i++){
+			String key = accesses[i];
+			if (cache.get(key) == null)
+				cache.put(key, i);
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Attaching the estimator rebuilds its shadow stack, so a few untimed
+	 * accesses bring it back into the CPU caches before the measurement.
+	 */
+	private static long runWith(LRUCache<String, Integer> cache, HitRatioCurveEstimator<String> estimator, int chunk){
+		cache.setHitRatioEstimator(estimator);
+		run(cache, (chunk + 1) * CHUNK - WARMUP, WARMUP);
+		return run(cache, chunk * CHUNK, CHUNK);
+	}
+
+	private static long runWithout(LRUCache<String, Integer> cache, int chunk){
+		cache.setHitRatioEstimator(null);
+		run(cache, (chunk + 1) * CHUNK - WARMUP, WARMUP);
+		return run(cache, chunk * CHUNK, CHUNK);
+	}
+
+	public static void main(String[] args){
+		String[] keys = new String[KEYS];
+		for (int i = 0; i < KEYS; i++)
+			keys[i] = "key" + i;
+		Random random = new Random(42);
+		accesses = new String[ACCESSES];
+		for (int i = 0; i < ACCESSES; i++)
+			accesses[i] = keys[Math.min(KEYS - 1, (int) Math.abs(random.nextGaussian() * KEYS / 10))];
+
+		LRUCache<String, Integer> cache = new LRUCache<>(CAPACITY);
+		HitRatioCurveEstimator<String> estimator = new HitRatioCurveEstimator<>();
+		int chunks = ACCESSES / CHUNK;
+		for (int chunk = 0; chunk < chunks; chunk++){
+			runWith(cache, estimator, chunk);
+			runWithout(cache, chunk);
+		}
+
+		long with = 0, without = 0;
+		double[] overheads = new double[PAIRS];
+		for (int pair = 0; pair < PAIRS; pair++){
+			int chunk = pair % chunks;
+			long a, b;
+			if (pair % 2 == 0){
+				a = runWithout(cache, chunk);
+				b = runWith(cache, estimator, chunk);
+			} else {
+				b = runWith(cache, estimator, chunk);
+				a = runWithout(cache, chunk);
+			}
+			without += a;
+			with += b;
+			overheads[pair] = (double) b / a - 1;
+		}
+		Arrays.sort(overheads);
+		double operations = (double) PAIRS * CHUNK;
+		System.out.printf("without estimator %8.1f ns/access%n", without / operations);
+		System.out.printf("with estimator    %8.1f ns/access%n", with / operations);
+		System.out.printf("overhead %.2f%% in total, %.2f%% median of pairs (quartiles %.2f%% .. %.2f%%)%n",
+				((double) with / without - 1) * 100, overheads[PAIRS / 2] * 100,
+				overheads[PAIRS / 4] * 100, overheads[3 * PAIRS / 4] * 100);
+	}
+}
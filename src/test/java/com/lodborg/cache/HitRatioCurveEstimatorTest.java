@@ -0,0 +1,103 @@
+package com.lodborg.cache;
+
+import org.junit.Test;
+
+import java.util.SortedMap;
+
+import static org.junit.Assert.*;
+
+public class HitRatioCurveEstimatorTest {
+
+	private static LRUCache<Integer, Integer> loopOverKeys(HitRatioCurveEstimator<Integer> estimator, int keys, int rounds){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(4);
+		cache.setHitRatioEstimator(estimator);
+		for (int round = 0; round < rounds; round++){
+			for (int i = 0; i < keys; i++){
+				if (cache.get(i) == null)
+					cache.put(i, i);
+			}
+		}
+		return cache;
+	}
+
+	@Test
+	public void test_emptyCurve(){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(4);
+		assertTrue(cache.getStatistics().getHitRatioCurve().isEmpty());
+		cache.setHitRatioEstimator(new HitRatioCurveEstimator<Integer>());
+		assertTrue(cache.getStatistics().getHitRatioCurve().isEmpty());
+	}
+
+	@Test
+	public void test_curveWithFullSampling(){
+		HitRatioCurveEstimator<Integer> estimator = new HitRatioCurveEstimator<>(1, 0.5, 1, 2);
+		LRUCache<Integer, Integer> cache = loopOverKeys(estimator, 4, 10);
+		SortedMap<Integer, Double> curve = cache.getStatistics().getHitRatioCurve();
+		assertEquals(3, curve.size());
+		assertEquals(0, curve.get(2), 0.0001);
+		assertEquals(0.9, curve.get(4), 0.0001);
+		assertEquals(0.9, curve.get(8), 0.0001);
+		assertEquals(cache.getStatistics().getHitRatio(), curve.get(4), 0.0001);
+	}
+
+	@Test
+	public void test_curveFollowsCapacity(){
+		HitRatioCurveEstimator<Integer> estimator = new HitRatioCurveEstimator<>(1, 0.5, 1, 2);
+		LRUCache<Integer, Integer> cache = loopOverKeys(estimator, 8, 10);
+		assertEquals(0, estimator.getCurve().get(4), 0.0001);
+		cache.setCapacity(8);
+		assertTrue(estimator.getCurve().isEmpty());
+		for (int i = 0; i < 8; i++)
+			cache.get(i);
+		SortedMap<Integer, Double> curve = estimator.getCurve();
+		assertEquals(0, curve.get(4), 0.0001);
+		assertEquals(1, curve.get(8), 0.0001);
+		assertEquals(1, curve.get(16), 0.0001);
+	}
+
+	@Test
+	public void test_multipliersRoundingToSameCapacity(){
+		HitRatioCurveEstimator<Integer> estimator = new HitRatioCurveEstimator<>(1, 0.5, 1, 2);
+		LRUCache<Integer, Integer> cache = new LRUCache<>(1);
+		cache.setHitRatioEstimator(estimator);
+		for (int round = 0; round < 10; round++){
+			for (int i = 0; i < 2; i++){
+				if (cache.get(i) == null)
+					cache.put(i, i);
+			}
+		}
+		SortedMap<Integer, Double> curve = estimator.getCurve();
+		assertEquals(2, curve.size());
+		assertEquals(0, curve.get(1), 0.0001);
+		assertEquals(0.9, curve.get(2), 0.0001);
+	}
+
+	@Test
+	public void test_suggestCapacity(){
+		HitRatioCurveEstimator<Integer> estimator = new HitRatioCurveEstimator<>(1, 0.5, 1, 2);
+		loopOverKeys(estimator, 4, 10);
+		assertEquals(2, estimator.suggestCapacity(0));
+		assertEquals(4, estimator.suggestCapacity(0.5));
+		assertEquals(-1, estimator.suggestCapacity(0.95));
+	}
+
+	@Test
+	public void test_partialSampling(){
+		HitRatioCurveEstimator<Integer> estimator = new HitRatioCurveEstimator<>(0.1, 1);
+		LRUCache<Integer, Integer> cache = new LRUCache<>(1000);
+		cache.setHitRatioEstimator(estimator);
+		for (int round = 0; round < 5; round++){
+			for (int i = 0; i < 500; i++){
+				if (cache.get(i) == null)
+					cache.put(i, i);
+			}
+		}
+		assertEquals(0.8, cache.getStatistics().getHitRatio(), 0.0001);
+		assertEquals(0.8, estimator.getCurve().get(1000), 0.05);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void test_invalidSamplingRate(){
+		new HitRatioCurveEstimator<Integer>(0, 1);
+	}
+}
@@ -2,8 +2,11 @@ package com.lodborg.cache;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import static org.junit.Assert.*;
@@ -453,4 +456,165 @@ public class LRUCacheTest {
 		assertNotNull(cache.get("Berlin"));
 		assertEquals(1, cache.size());
 	}
+
+	@Test
+	public void test_growCapacity(){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(2);
+		cache.put(1, 11);
+		cache.put(2, 12);
+		cache.setCapacity(3);
+		assertEquals(3, cache.getCapacity());
+		cache.put(3, 13);
+		assertEquals(3, cache.size());
+		assertEquals("(3,2,1)", cache.toString());
+		cache.put(4, 14);
+		assertEquals(3, cache.size());
+		assertEquals("(4,3,2)", cache.toString());
+	}
+
+	@Test
+	public void test_shrinkCapacity(){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(4);
+		cache.put(1, 11);
+		cache.put(2, 12);
+		cache.put(3, 13);
+		cache.put(4, 14);
+		cache.setCapacity(2);
+		assertEquals(4, cache.size());
+		assertTrue(cache.get(4) == 14);
+		assertEquals(2, cache.size());
+		assertEquals("(4,3)", cache.toString());
+		assertNull(cache.get(1));
+		assertNull(cache.get(2));
+	}
+
+	@Test
+	public void test_shrinkCapacityIncrementally(){
+		int batch = LRUCache.SHRINK_BATCH_SIZE;
+		LRUCache<Integer, Integer> cache = new LRUCache<>(3 * batch);
+		for (int i = 0; i < 3 * batch; i++)
+			cache.put(i, i);
+		cache.setCapacity(1);
+		cache.get(-1);
+		assertEquals(2 * batch, cache.size());
+		cache.put(-1, -1);
+		assertEquals(batch, cache.size());
+		cache.get(-1);
+		cache.get(-1);
+		assertEquals(1, cache.size());
+		assertEquals("(-1)", cache.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void test_invalidCapacity(){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(2);
+		cache.setCapacity(0);
+	}
+
+	@Test
+	public void test_statistics(){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(2);
+		cache.put(1, 11);
+		cache.put(2, 12);
+		cache.get(1);
+		cache.get(3);
+		cache.put(3, 13);
+		cache.get(2);
+		CacheStatistics stats = cache.getStatistics();
+		assertEquals(1, stats.getHitCount());
+		assertEquals(2, stats.getMissCount());
+		assertEquals(1, stats.getEvictionCount());
+		assertEquals(1.0 / 3, stats.getHitRatio(), 0.0001);
+		cache.evict(1);
+		assertEquals(1, cache.getStatistics().getEvictionCount());
+	}
+
+	@Test
+	public void test_traceSlowOperations(){
+		final List<CacheOperation> traced = new ArrayList<>();
+		LRUCache<Integer, Integer> cache = new LRUCache<>(2);
+		cache.setSlowOperationListener(new SlowOperationListener<Integer>() {
+			@Override
+			public void onSlowOperation(CacheOperation operation, Integer key, long totalNanos, long lockWaitNanos, long listenerNanos) {
+				assertTrue(listenerNanos <= totalNanos);
+				assertEquals(0, lockWaitNanos);
+				traced.add(operation);
+			}
+		}, 0, 2);
+		cache.put(1, 11);
+		cache.put(2, 12);
+		cache.get(1);
+		cache.get(2);
+		assertEquals(Arrays.asList(CacheOperation.PUT, CacheOperation.GET), traced);
+		cache.removeSlowOperationListener();
+		cache.get(1);
+		cache.get(2);
+		assertEquals(2, traced.size());
+	}
+
+	@Test
+	public void test_dontTraceFastOperations(){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(2);
+		cache.setSlowOperationListener(new SlowOperationListener<Integer>() {
+			@Override
+			public void onSlowOperation(CacheOperation operation, Integer key, long totalNanos, long lockWaitNanos, long listenerNanos) {
+				fail();
+			}
+		}, Long.MAX_VALUE, 1);
+		cache.put(1, 11);
+		cache.get(1);
+	}
+
+	@Test
+	public void test_getEntryNullValue(){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(3);
+		cache.put(1, 11);
+		cache.put(2, null);
+		LRUCache.Node<Integer, Integer> node = cache.getEntry(2);
+		assertNotNull(node);
+		assertNull(node.getValue());
+		assertNull(cache.getEntry(3));
+		assertEquals("(2,1)", cache.toString());
+		assertEquals(1, cache.getStatistics().getHitCount());
+		assertEquals(1, cache.getStatistics().getMissCount());
+	}
+
+	@Test
+	public void test_containsKey(){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(3);
+		cache.put(1, 11);
+		cache.put(2, null);
+		assertTrue(cache.containsKey(1));
+		assertTrue(cache.containsKey(2));
+		assertFalse(cache.containsKey(3));
+		assertEquals("(2,1)", cache.toString());
+		assertEquals(0, cache.getStatistics().getHitCount());
+	}
+
+	@Test
+	public void test_negativeCaching(){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(3);
+		cache.markAbsent(1);
+		assertFalse(cache.isKnownAbsent(1));
+		cache.setMissFilter(new MissFilter(100, Long.MAX_VALUE));
+		cache.markAbsent(1);
+		assertTrue(cache.isKnownAbsent(1));
+		assertFalse(cache.isKnownAbsent(2));
+		assertEquals(0, cache.size());
+		cache.put(1, 11);
+		assertFalse(cache.isKnownAbsent(1));
+		cache.evict(1);
+		assertFalse(cache.isKnownAbsent(1));
+	}
+
+	@Test
+	public void test_dontMarkStoredKeyAbsent(){
+		LRUCache<Integer, Integer> cache = new LRUCache<>(3);
+		cache.setMissFilter(new MissFilter(100, Long.MAX_VALUE));
+		cache.put(1, 11);
+		cache.markAbsent(1);
+		assertFalse(cache.isKnownAbsent(1));
+		cache.evict(1);
+		assertFalse(cache.isKnownAbsent(1));
+	}
 }
@@ -0,0 +1,72 @@
+package com.lodborg.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MissFilterTest {
+
+	@Test
+	public void test_addAndRemove(){
+		MissFilter filter = new MissFilter(100, Long.MAX_VALUE);
+		assertFalse(filter.mightContain("New York"));
+		filter.add("New York");
+		assertTrue(filter.mightContain("New York"));
+		filter.remove("New York");
+		assertFalse(filter.mightContain("New York"));
+	}
+
+	@Test
+	public void test_addTwiceRemoveOnce(){
+		MissFilter filter = new MissFilter(100, Long.MAX_VALUE);
+		filter.add(1);
+		filter.add(1);
+		filter.remove(1);
+		assertFalse(filter.mightContain(1));
+	}
+
+	@Test
+	public void test_decay(){
+		MissFilter filter = new MissFilter(100, Long.MAX_VALUE);
+		filter.add(1);
+		filter.rotate();
+		filter.add(2);
+		assertTrue(filter.mightContain(1));
+		assertTrue(filter.mightContain(2));
+		filter.rotate();
+		assertFalse(filter.mightContain(1));
+		assertTrue(filter.mightContain(2));
+		filter.rotate();
+		assertFalse(filter.mightContain(2));
+	}
+
+	@Test
+	public void test_noFalseNegatives(){
+		MissFilter filter = new MissFilter(10000, Long.MAX_VALUE);
+		for (int i = 0; i < 10000; i++)
+			filter.add(i);
+		for (int i = 0; i < 10000; i++)
+			assertTrue(filter.mightContain(i));
+	}
+
+	@Test
+	public void test_fewFalsePositives(){
+		MissFilter filter = new MissFilter(10000, Long.MAX_VALUE);
+		for (int i = 0; i < 10000; i++)
+			filter.add(i);
+		int falsePositives = 0;
+		for (int i = 10000; i < 110000; i++)
+			if (filter.mightContain(i))
+				falsePositives++;
+		assertTrue("False positives: " + falsePositives, falsePositives < 100);
+	}
+
+	@Test
+	public void test_overflowRotatesEarly(){
+		MissFilter filter = new MissFilter(100, Long.MAX_VALUE);
+		for (int i = 0; i < 1000; i++)
+			filter.add(i);
+		assertTrue(filter.mightContain(999));
+		assertFalse(filter.mightContain(0));
+	}
+}
@@ -0,0 +1,81 @@
+package com.lodborg.cache;
+
+import java.util.Random;
+
+/**
+ * Compares reads of a small set of hot keys from a synchronized LRU cache with
+ * reads through a near cache. Not run as part of the tests, run it with:
+ * <pre>
+ * java -cp target/classes:target/test-classes com.lodborg.cache.NearCacheBenchmark [threads]
+ * </pre>
+ */
+public class NearCacheBenchmark {
+	private static final int CAPACITY = 100000;
+	private static final int HOT_KEYS = 50;
+	private static final int READS_PER_THREAD = 10000000;
+	private static final int ROUNDS = 5;
+
+	private interface Reader {
+		Integer get(Integer key);
+	}
+
+	private static long run(final Reader reader, int threads) throws InterruptedException {
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++){
+			final Integer[] keys = new Integer[1024];
+			Random random = new Random(t);
+			for (int i = 0; i < keys.length; i++)
+				keys[i] = random.nextInt(HOT_KEYS);
+			workers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					long sum = 0;
+					for (int i = 0; i < READS_PER_THREAD; i++)
+						sum += reader.get(keys[i & (keys.length - 1)]);
+					if (sum == 42)
+						System.out.println(sum);
+				}
+			});
+		}
+		long start = System.nanoTime();
+		for (Thread worker : workers)
+			worker.start();
+		for (Thread worker : workers)
+			worker.join();
+		return System.nanoTime() - start;
+	}
+
+	private static void report(String name, long nanos, int threads){
+		double reads = (double) READS_PER_THREAD * threads;
+		System.out.printf("%-14s %8.1f ns/read %10.1f M reads/s%n", name, nanos / reads, reads / nanos * 1000);
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		final LRUCache<Integer, Integer> shared = new LRUCache<>(CAPACITY);
+		for (int i = 0; i < CAPACITY; i++)
+			shared.put(i, i);
+		final NearCache<Integer, Integer> near = new NearCache<>(shared);
+
+		Reader synchronizedReader = new Reader() {
+			@Override
+			public Integer get(Integer key) {
+				synchronized (shared) {
+					return shared.get(key);
+				}
+			}
+		};
+		Reader nearReader = new Reader() {
+			@Override
+			public Integer get(Integer key) {
+				return near.get(key);
+			}
+		};
+
+		for (int round = 0; round < ROUNDS; round++){
+			System.out.println("Round " + (round + 1) + ", " + threads + " threads, " + HOT_KEYS + " hot keys:");
+			report("synchronized", run(synchronizedReader, threads), threads);
+			report("near cache", run(nearReader, threads), threads);
+		}
+	}
+}
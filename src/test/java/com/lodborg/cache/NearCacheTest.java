@@ -0,0 +1,252 @@
+package com.lodborg.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class NearCacheTest {
+
+	private static <V> V getInOtherThread(final NearCache<Integer, V> cache, final Integer key) throws InterruptedException {
+		final AtomicReference<V> result = new AtomicReference<>();
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				result.set(cache.get(key));
+			}
+		});
+		thread.start();
+		thread.join();
+		return result.get();
+	}
+
+	@Test
+	public void test_getAndPut(){
+		NearCache<Integer, Integer> cache = new NearCache<>(new LRUCache<Integer, Integer>(3));
+		assertNull(cache.get(1));
+		cache.put(1, 11);
+		assertEquals(11, (int) cache.get(1));
+		assertEquals(11, (int) cache.get(1));
+		cache.put(1, 111);
+		assertEquals(111, (int) cache.get(1));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void test_nullValue(){
+		NearCache<Integer, Integer> cache = new NearCache<>(new LRUCache<Integer, Integer>(3));
+		cache.put(1, null);
+		assertNull(cache.get(1));
+		assertNull(cache.get(1));
+		cache.put(1, 11);
+		assertEquals(11, (int) cache.get(1));
+	}
+
+	@Test
+	public void test_putInvalidatesOtherThreads() throws InterruptedException {
+		final NearCache<Integer, Integer> cache = new NearCache<>(new LRUCache<Integer, Integer>(3));
+		cache.put(1, 11);
+		assertEquals(11, (int) cache.get(1));
+		assertEquals(11, (int) getInOtherThread(cache, 1));
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				cache.put(1, 111);
+			}
+		});
+		thread.start();
+		thread.join();
+		assertEquals(111, (int) cache.get(1));
+	}
+
+	@Test
+	public void test_evictInvalidates(){
+		NearCache<Integer, Integer> cache = new NearCache<>(new LRUCache<Integer, Integer>(3));
+		cache.put(1, 11);
+		cache.put(2, 12);
+		cache.get(1);
+		cache.get(2);
+		cache.evict(1);
+		assertNull(cache.get(1));
+		assertEquals(12, (int) cache.get(2));
+		cache.evictAll();
+		assertNull(cache.get(2));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void test_slotCollision(){
+		NearCache<Integer, Integer> cache = new NearCache<>(new LRUCache<Integer, Integer>(100), 1);
+		for (int i = 0; i < 10; i++)
+			cache.put(i, i);
+		for (int round = 0; round < 3; round++)
+			for (int i = 0; i < 10; i++)
+				assertEquals(i, (int) cache.get(i));
+	}
+
+	@Test
+	public void test_hintsBumpSharedCache(){
+		LRUCache<Integer, Integer> shared = new LRUCache<>(2);
+		NearCache<Integer, Integer> cache = new NearCache<>(shared);
+		cache.put(1, 11);
+		cache.get(1);
+		cache.put(2, 12);
+		cache.get(1);
+		cache.get(1);
+		assertEquals(1, cache.getStatistics().getHitCount());
+		cache.flushHints();
+		assertEquals(3, cache.getStatistics().getHitCount());
+		cache.put(3, 13);
+		assertEquals(11, (int) cache.get(1));
+		assertNull(cache.get(2));
+	}
+
+	@Test
+	public void test_overflowInvalidates(){
+		EvictionListener mock = mock(EvictionListener.class);
+		LRUCache<Integer, Integer> shared = new LRUCache<>(1);
+		shared.setListener(mock);
+		NearCache<Integer, Integer> cache = new NearCache<>(shared);
+		cache.put(1, 11);
+		assertEquals(11, (int) cache.get(1));
+		cache.put(2, 12);
+		verify(mock).onEvict(1, 11);
+		for (int i = 0; i < 5000; i++)
+			assertNull(cache.get(1));
+		cache.flushHints();
+		assertEquals(1, cache.getStatistics().getHitCount());
+	}
+
+	@Test
+	public void test_invalidatedBeforeListener() throws Exception {
+		LRUCache<Integer, Integer> shared = new LRUCache<>(1);
+		final NearCache<Integer, Integer> cache = new NearCache<>(shared);
+		final Thread[] reader = new Thread[1];
+		final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				return reader[0] = new Thread(runnable);
+			}
+		});
+		final Callable<Integer> read = new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return cache.get(1);
+			}
+		};
+		cache.put(1, 11);
+		assertEquals(11, (int) executor.submit(read).get());
+
+		final List<Future<Integer>> readsDuringEviction = new ArrayList<>();
+		shared.setListener(new EvictionListener<Integer, Integer>() {
+			@Override
+			public void onEvict(Integer key, Integer value) {
+				Future<Integer> result = executor.submit(read);
+				// The reader either answers from its L1, or blocks on the lock of the
+				// shared cache, held by this thread.
+				while (!result.isDone() && reader[0].getState() != Thread.State.BLOCKED)
+					Thread.yield();
+				readsDuringEviction.add(result);
+			}
+		});
+		cache.put(2, 12);
+		assertNull(readsDuringEviction.get(0).get());
+		executor.shutdown();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void test_singleNearCachePerSharedCache(){
+		LRUCache<Integer, Integer> shared = new LRUCache<>(2);
+		new NearCache<>(shared);
+		new NearCache<>(shared);
+	}
+
+	@Test
+	public void test_shrinkInvalidates(){
+		LRUCache<Integer, Integer> shared = new LRUCache<>(2);
+		NearCache<Integer, Integer> cache = new NearCache<>(shared);
+		cache.put(1, 11);
+		cache.put(2, 12);
+		assertEquals(11, (int) cache.get(1));
+		assertEquals(12, (int) cache.get(2));
+		cache.setCapacity(1);
+		assertNull(cache.get(3));
+		assertNull(cache.get(1));
+		assertEquals(12, (int) cache.get(2));
+	}
+
+	@Test
+	public void test_traceSharedAccesses(){
+		final List<CacheOperation> traced = new ArrayList<>();
+		NearCache<Integer, Integer> cache = new NearCache<>(new LRUCache<Integer, Integer>(2));
+		cache.setSlowOperationListener(new SlowOperationListener<Integer>() {
+			@Override
+			public void onSlowOperation(CacheOperation operation, Integer key, long totalNanos, long lockWaitNanos, long listenerNanos) {
+				assertTrue(lockWaitNanos + listenerNanos <= totalNanos);
+				traced.add(operation);
+			}
+		}, 0, 1);
+		cache.put(1, 11);
+		cache.get(1);
+		cache.get(1);
+		assertEquals(Arrays.asList(CacheOperation.PUT, CacheOperation.GET), traced);
+		cache.removeSlowOperationListener();
+		cache.put(2, 12);
+		assertEquals(2, traced.size());
+	}
+
+	@Test
+	public void test_traceLockWait() throws InterruptedException {
+		LRUCache<Integer, Integer> shared = new LRUCache<>(1);
+		final NearCache<Integer, Integer> cache = new NearCache<>(shared);
+		final CountDownLatch evicting = new CountDownLatch(1);
+		shared.setListener(new EvictionListener<Integer, Integer>() {
+			@Override
+			public void onEvict(Integer key, Integer value) {
+				evicting.countDown();
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		final Map<Integer, long[]> traced = new ConcurrentHashMap<>();
+		cache.setSlowOperationListener(new SlowOperationListener<Integer>() {
+			@Override
+			public void onSlowOperation(CacheOperation operation, Integer key, long totalNanos, long lockWaitNanos, long listenerNanos) {
+				traced.put(key, new long[]{lockWaitNanos, listenerNanos});
+			}
+		}, 0, 1);
+		cache.put(1, 11);
+		Thread evictor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				cache.put(2, 12);
+			}
+		});
+		evictor.start();
+		evicting.await();
+		// Waits until the put of the other thread has left the eviction listener.
+		assertNull(cache.get(3));
+		evictor.join();
+
+		long millis = 1000000;
+		assertTrue(traced.get(2)[1] >= 100 * millis);
+		assertTrue(traced.get(3)[0] >= 50 * millis);
+		assertEquals(0, traced.get(3)[1]);
+	}
+}
@@ -0,0 +1,197 @@
+package com.lodborg.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class PartitionedLRUCacheTest {
+
+	private static PartitionedLRUCache<String, Integer, Integer> newCache(){
+		PartitionedLRUCache<String, Integer, Integer> cache = new PartitionedLRUCache<>(4);
+		cache.addPartition("a", 1, 3);
+		cache.addPartition("b", 1, 3);
+		return cache;
+	}
+
+	@Test
+	public void test_partitionsDontCollide(){
+		PartitionedLRUCache<String, Integer, Integer> cache = newCache();
+		cache.put("a", 1, 11);
+		cache.put("b", 1, 21);
+		assertEquals(11, (int) cache.get("a", 1));
+		assertEquals(21, (int) cache.get("b", 1));
+		assertEquals(2, cache.size());
+		cache.evict("a", 1);
+		assertNull(cache.get("a", 1));
+		assertEquals(21, (int) cache.get("b", 1));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void test_updateDoesntGrow(){
+		PartitionedLRUCache<String, Integer, Integer> cache = newCache();
+		cache.put("a", 1, 11);
+		cache.put("a", 1, 111);
+		assertEquals(1, cache.size());
+		assertEquals(111, (int) cache.get("a", 1));
+	}
+
+	@Test
+	public void test_evictGloballyLeastRecent(){
+		PartitionedLRUCache<String, Integer, Integer> cache = newCache();
+		cache.put("a", 1, 11);
+		cache.put("b", 1, 21);
+		cache.put("a", 2, 12);
+		cache.put("b", 2, 22);
+		cache.get("a", 1);
+		cache.put("b", 3, 23);
+		assertNull(cache.get("b", 1));
+		assertEquals(4, cache.size());
+		cache.put("a", 3, 13);
+		assertNull(cache.get("a", 2));
+		assertEquals(2, cache.size("a"));
+		assertEquals(2, cache.size("b"));
+	}
+
+	@Test
+	public void test_guaranteedMinimum(){
+		PartitionedLRUCache<String, Integer, Integer> cache = newCache();
+		cache.put("a", 1, 11);
+		for (int i = 0; i < 10; i++)
+			cache.put("b", i, i);
+		assertEquals(11, (int) cache.get("a", 1));
+		assertEquals(1, cache.size("a"));
+		assertEquals(3, cache.size("b"));
+	}
+
+	@Test
+	public void test_burstMaximum(){
+		PartitionedLRUCache<String, Integer, Integer> cache = newCache();
+		for (int i = 0; i < 5; i++)
+			cache.put("a", i, i);
+		assertEquals(3, cache.size("a"));
+		assertEquals(3, cache.size());
+		assertNull(cache.get("a", 1));
+		assertEquals(2, (int) cache.get("a", 2));
+	}
+
+	@Test
+	public void test_listenerAndStatisticsPerPartition(){
+		EvictionListener mockA = mock(EvictionListener.class);
+		EvictionListener mockB = mock(EvictionListener.class);
+		PartitionedLRUCache<String, Integer, Integer> cache = newCache();
+		cache.setListener("a", mockA);
+		cache.setListener("b", mockB);
+		cache.put("a", 1, 11);
+		cache.put("a", 2, 12);
+		cache.put("b", 1, 21);
+		cache.put("b", 2, 22);
+		cache.put("b", 3, 23);
+		verify(mockA).onEvict(1, 11);
+		verify(mockB, never()).onEvict(any(Integer.class), any(Integer.class));
+		cache.get("b", 1);
+		cache.get("b", 4);
+		assertEquals(1, cache.getStatistics("a").getEvictionCount());
+		assertEquals(1, cache.getStatistics("b").getHitCount());
+		assertEquals(1, cache.getStatistics("b").getMissCount());
+		assertEquals(2, cache.getStatistics().size());
+	}
+
+	/**
+	 * Compares the evictions with a model that scans all partitions for the
+	 * globally least recently used pair.
+	 */
+	@Test
+	public void test_manyPartitionsMatchLinearScan(){
+		final int partitions = 40;
+		Random random = new Random(7);
+		PartitionedLRUCache<Integer, Integer, Integer> cache = new PartitionedLRUCache<>(150);
+		final List<String> evicted = new ArrayList<>();
+		List<LinkedHashMap<Integer, Long>> model = new ArrayList<>();
+		int[] minSizes = new int[partitions], maxSizes = new int[partitions];
+		for (int p = 0; p < partitions; p++){
+			minSizes[p] = random.nextInt(4);
+			maxSizes[p] = minSizes[p] + 1 + random.nextInt(20);
+			cache.addPartition(p, minSizes[p], maxSizes[p]);
+			final int partition = p;
+			cache.setListener(p, new EvictionListener<Integer, Integer>() {
+				@Override
+				public void onEvict(Integer key, Integer value) {
+					evicted.add(partition + ":" + key);
+				}
+			});
+			model.add(new LinkedHashMap<Integer, Long>(16, 0.75f, true));
+		}
+
+		List<String> expected = new ArrayList<>();
+		long clock = 0;
+		int size = 0;
+		for (int i = 0; i < 50000; i++){
+			int p = random.nextInt(partitions), key = random.nextInt(30), op = random.nextInt(100);
+			LinkedHashMap<Integer, Long> partition = model.get(p);
+			if (op < 50){
+				Integer value = cache.get(p, key);
+				assertEquals(partition.containsKey(key), value != null);
+				if (value != null)
+					partition.put(key, ++clock);
+			} else if (op < 95){
+				cache.put(p, key, key);
+				if (partition.put(key, ++clock) != null)
+					continue;
+				size++;
+				if (partition.size() > maxSizes[p]){
+					expected.add(p + ":" + removeEldest(partition));
+					size--;
+				} else if (size > 150){
+					int victim = -1;
+					long oldest = Long.MAX_VALUE;
+					for (int q = 0; q < partitions; q++){
+						LinkedHashMap<Integer, Long> candidate = model.get(q);
+						if (candidate.size() > minSizes[q] && candidate.values().iterator().next() < oldest){
+							oldest = candidate.values().iterator().next();
+							victim = q;
+						}
+					}
+					expected.add(victim + ":" + removeEldest(model.get(victim)));
+					size--;
+				}
+			} else if (op < 99){
+				cache.evict(p, key);
+				if (partition.remove(key) != null)
+					size--;
+			} else {
+				cache.evictAll(p);
+				size -= partition.size();
+				partition.clear();
+			}
+			assertEquals(size, cache.size());
+		}
+		assertEquals(expected, evicted);
+	}
+
+	private static Integer removeEldest(LinkedHashMap<Integer, Long> partition){
+		Iterator<Map.Entry<Integer, Long>> iterator = partition.entrySet().iterator();
+		Integer key = iterator.next().getKey();
+		iterator.remove();
+		return key;
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void test_guaranteesExceedCapacity(){
+		PartitionedLRUCache<String, Integer, Integer> cache = newCache();
+		cache.addPartition("c", 3, 3);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void test_unknownPartition(){
+		newCache().get("c", 1);
+	}
+}
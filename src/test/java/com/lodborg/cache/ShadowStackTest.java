@@ -0,0 +1,47 @@
+package com.lodborg.cache;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ShadowStackTest {
+
+	@Test
+	public void test_levels(){
+		ShadowStack stack = new ShadowStack(new int[]{1, 2, 4});
+		assertEquals(3, stack.access(1));
+		assertEquals(3, stack.access(2));
+		assertEquals(1, stack.access(1));
+		assertEquals(0, stack.access(1));
+		assertEquals(3, stack.access(3));
+		assertEquals(3, stack.access(4));
+		assertEquals(2, stack.access(2));
+		assertEquals(3, stack.access(5));
+		assertEquals(3, stack.access(1));
+		assertArrayEquals(new int[]{4, 2, 5, 1}, stack.keysFromLeastRecent());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void test_matchesLRUCaches(){
+		int[] sizes = {1, 3, 10, 40};
+		ShadowStack stack = new ShadowStack(sizes);
+		LRUCache<Integer, Boolean>[] caches = new LRUCache[sizes.length];
+		for (int i = 0; i < sizes.length; i++)
+			caches[i] = new LRUCache<>(sizes[i]);
+		Random random = new Random(42);
+		for (int n = 0; n < 100000; n++){
+			int key = (int) (random.nextGaussian() * 30);
+			int expected = sizes.length;
+			for (int i = sizes.length - 1; i >= 0; i--){
+				if (caches[i].get(key) != null)
+					expected = i;
+				else
+					caches[i].put(key, Boolean.TRUE);
+			}
+			assertEquals(expected, stack.access(key));
+		}
+	}
+}